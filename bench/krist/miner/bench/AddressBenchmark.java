@@ -0,0 +1,34 @@
+package krist.miner.bench;
+
+import java.util.concurrent.TimeUnit;
+import krist.miner.Utils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Wallet address derivation, @see <code>Utils.generateAddressV2</code>,
+ * which the transaction window runs on every confirmation.
+ */
+@State (Scope.Thread)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.MICROSECONDS)
+@Warmup (iterations = 5, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (1)
+public class AddressBenchmark
+{
+    private int password;
+    
+    @Benchmark
+    public String generateAddressV2()
+    {
+        return Utils.generateAddressV2 ("password" + password++);
+    }
+}
@@ -0,0 +1,21 @@
+package krist.miner.bench;
+
+/**
+ * Fixed inputs shared by the benchmarks, shaped like real mining work: a
+ * version 2 address and a 12 character block.
+ */
+final class BenchmarkData
+{
+    static final String MINER_ID = "k5ztameslf";
+    static final String BLOCK    = "000000a1b2c3";
+    
+    /**
+     * A realistic getwork target. Nothing in a benchmark run should meet it
+     * often enough to matter.
+     */
+    static final long TARGET = 100000;
+    
+    private BenchmarkData()
+    {
+    }
+}
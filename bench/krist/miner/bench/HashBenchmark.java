@@ -0,0 +1,78 @@
+package krist.miner.bench;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import java.util.concurrent.TimeUnit;
+import krist.miner.Midstate;
+import krist.miner.NonceHasher;
+import krist.miner.Sha256;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of a single SHA-256 hash, through the reference Guava path the
+ * miner originally used and through the allocation-free path it uses now.
+ */
+@State (Scope.Thread)
+@BenchmarkMode (Mode.Throughput)
+@OutputTimeUnit (TimeUnit.SECONDS)
+@Warmup (iterations = 5, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (1)
+public class HashBenchmark
+{
+    private final int[]  state    = new int[8];
+    private final int[]  schedule = new int[64];
+    private final byte[] block    = new byte[Sha256.BLOCK_LENGTH];
+    
+    private NonceHasher hasher;
+    private long        nonce;
+    
+    @Setup
+    public void setup()
+    {
+        hasher = new NonceHasher (new Midstate (BenchmarkData.MINER_ID, BenchmarkData.BLOCK));
+        nonce  = 0;
+        
+        Sha256.reset (state);
+    }
+    
+    /**
+     * What <code>Utils.subSHA256</code> and the old loop did for every nonce:
+     * build the string, hash it with Guava, hex encode, cut and parse.
+     */
+    @Benchmark
+    public long guavaSubSHA256()
+    {
+        String data = BenchmarkData.MINER_ID + BenchmarkData.BLOCK + Long.toString (nonce++, 36);
+        return Long.parseLong (Hashing.sha256().hashString (data, Charsets.UTF_8).toString().substring (0, 12), 16);
+    }
+    
+    /**
+     * One bare compression.
+     */
+    @Benchmark
+    public int compress()
+    {
+        Sha256.compress (state, schedule, block, 0);
+        return state[0];
+    }
+    
+    /**
+     * A full digest of prefix and nonce from the cached midstate, with the
+     * nonce written in from scratch.
+     */
+    @Benchmark
+    public long nonceHasherHash()
+    {
+        return hasher.hash (nonce++);
+    }
+}
@@ -0,0 +1,52 @@
+package krist.miner.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs every benchmark with the GC profiler attached, so that the allocation
+ * rate (gc.alloc.rate.norm, bytes per operation) shows up next to every
+ * score. The mining loop benchmarks should stay at 0 bytes per operation.
+ * <code>MonitoringBenchmark</code> runs its own groups of threads; its miners
+ * should score the same whether or not they are being monitored.
+ *
+ * The mining loop is then run again at 1 to N threads, N being the number of
+ * available processors, to show aggregate throughput as threads are added.
+ *
+ * Usage: <code>MiningBenchmarks [maxThreads]</code>
+ */
+public final class MiningBenchmarks
+{
+    private MiningBenchmarks()
+    {
+    }
+    
+    public static void main (String[] args) throws RunnerException
+    {
+        int maxThreads = args.length > 0 ? Integer.parseInt (args[0]) : Runtime.getRuntime().availableProcessors();
+        
+        Options singleThreaded = new OptionsBuilder()
+            .include (HashBenchmark.class.getSimpleName())
+            .include (MiningLoopBenchmark.class.getSimpleName())
+            .include (AddressBenchmark.class.getSimpleName())
+            .include (MonitoringBenchmark.class.getSimpleName())
+            .addProfiler (GCProfiler.class)
+            .build();
+        
+        new Runner (singleThreaded).run();
+        
+        for (int threads = 1; threads <= maxThreads; threads++)
+        {
+            Options scaling = new OptionsBuilder()
+                .include (MiningLoopBenchmark.class.getSimpleName() + ".engineBatch")
+                .threads (threads)
+                .addProfiler (GCProfiler.class)
+                .build();
+            
+            new Runner (scaling).run();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package krist.miner.bench;
+
+import java.util.concurrent.TimeUnit;
+import krist.miner.BatchHasher;
+import krist.miner.ClusterMiner;
+import krist.miner.HashEngine;
+import krist.miner.HashEngines;
+import krist.miner.Midstate;
+import krist.miner.NonceHasher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The body of the mining loop, per nonce: moving the digits on, hashing and
+ * comparing against the target.
+ *
+ * <code>engineBatch</code> runs a whole <code>ClusterMiner.BATCH_SIZE</code>
+ * batch through each hash engine, exactly as <code>ClusterMiner.run</code>
+ * does, and reports per nonce. Engines which are not supported on the
+ * machine (or JVM flags) running the benchmark fail their trial.
+ *
+ * Thread scaling is covered by running with several thread counts, @see
+ * <code>MiningBenchmarks.main</code>.
+ */
+@State (Scope.Thread)
+@BenchmarkMode (Mode.Throughput)
+@OutputTimeUnit (TimeUnit.SECONDS)
+@Warmup (iterations = 5, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector", "--enable-native-access=ALL-UNNAMED" })
+public class MiningLoopBenchmark
+{
+    @Param ({ "java", "vector", "native" })
+    public String engine;
+    
+    private NonceHasher hasher;
+    private BatchHasher batchHasher;
+    private long        nonce;
+    
+    @Setup (Level.Trial)
+    public void setup()
+    {
+        Midstate midstate = new Midstate (BenchmarkData.MINER_ID, BenchmarkData.BLOCK);
+        
+        hasher = new NonceHasher (midstate);
+        nonce  = midstate.getLayout().getFirstNonce();
+        hasher.seek (nonce);
+        
+        for (HashEngine candidate : HashEngines.discover())
+        {
+            if (candidate.getName().equals (engine))
+            {
+                batchHasher = candidate.newBatchHasher (midstate, ClusterMiner.BATCH_SIZE);
+            }
+        }
+        
+        if (batchHasher == null)
+        {
+            throw new IllegalStateException ("Hash engine '" + engine + "' is not supported here.");
+        }
+    }
+    
+    @TearDown (Level.Trial)
+    public void tearDown()
+    {
+        batchHasher.close();
+    }
+    
+    /**
+     * One iteration of the scalar loop: check the current nonce, move on.
+     * Independent of the engine parameter.
+     */
+    @Benchmark
+    public boolean scalarLoopBody()
+    {
+        boolean isBelow = hasher.isBelow (BenchmarkData.TARGET);
+        hasher.increment();
+        
+        return isBelow;
+    }
+    
+    /**
+     * One batch through the selected engine, reported per nonce.
+     */
+    @Benchmark
+    @OperationsPerInvocation (ClusterMiner.BATCH_SIZE)
+    public long engineBatch()
+    {
+        long solution = batchHasher.findBelow (nonce, ClusterMiner.BATCH_SIZE, BenchmarkData.TARGET);
+        nonce += ClusterMiner.BATCH_SIZE;
+        
+        return solution;
+    }
+}
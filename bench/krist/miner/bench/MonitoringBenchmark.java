@@ -0,0 +1,156 @@
+package krist.miner.bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import krist.miner.BatchHasher;
+import krist.miner.ClusterMiner;
+import krist.miner.JavaHashEngine;
+import krist.miner.Midstate;
+import krist.miner.MinerCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * What reading the miners' <code>MinerCounters</code> costs the miners.
+ *
+ * Each miner hashes a <code>ClusterMiner.BATCH_SIZE</code> batch with the
+ * Java engine and publishes its counters, exactly as
+ * <code>ClusterMiner.mineRange</code> does, and the score is per nonce.
+ * <code>alone</code> is the baseline. In <code>monitored</code> another
+ * thread reads the counters in a tight loop, far more often than the
+ * foreman's once a second. In <code>neighbours</code> two miners publish to
+ * counters allocated back to back, as the pool's are. The difference
+ * between their per-miner scores and <code>alone</code> is the overhead of
+ * monitoring, which the padding in <code>MinerCounters</code> is meant to
+ * keep within the error.
+ *
+ * The groups need a core per thread to mean anything: 2 for
+ * <code>monitored</code> and <code>neighbours</code>.
+ */
+@BenchmarkMode (Mode.Throughput)
+@OutputTimeUnit (TimeUnit.SECONDS)
+@Warmup (iterations = 5, time = 1)
+@Measurement (iterations = 10, time = 1)
+@Fork (3)
+public class MonitoringBenchmark
+{
+    /**
+     * The counters shared by a group's threads.
+     */
+    @State (Scope.Group)
+    public static class Shared
+    {
+        private final MinerCounters[] counters = { new MinerCounters(), new MinerCounters() };
+        private final AtomicInteger   next     = new AtomicInteger();
+        
+        /**
+         * @return The next miner's counters.
+         */
+        MinerCounters claim()
+        {
+            return counters[next.getAndIncrement() % counters.length];
+        }
+    }
+    
+    /**
+     * One miner: its own hasher, and progress counted as the miners do.
+     */
+    @State (Scope.Thread)
+    public static class Miner
+    {
+        private BatchHasher   hasher;
+        private MinerCounters counters;
+        private long          nonce;
+        private long          hashes;
+        private long          batches;
+        
+        @Setup (Level.Trial)
+        public void setup()
+        {
+            Midstate midstate = new Midstate (BenchmarkData.MINER_ID, BenchmarkData.BLOCK);
+            
+            hasher = new JavaHashEngine().newBatchHasher (midstate, ClusterMiner.BATCH_SIZE);
+            nonce  = midstate.getLayout().getFirstNonce();
+        }
+        
+        @TearDown (Level.Trial)
+        public void tearDown()
+        {
+            hasher.close();
+        }
+        
+        long mineBatch (Shared shared)
+        {
+            if (counters == null)
+            {
+                counters = shared.claim();
+            }
+            
+            long solution = hasher.findBelow (nonce, ClusterMiner.BATCH_SIZE, BenchmarkData.TARGET);
+            
+            nonce  += ClusterMiner.BATCH_SIZE;
+            hashes += ClusterMiner.BATCH_SIZE;
+            batches++;
+            
+            counters.publish (hashes, batches, nonce);
+            return solution;
+        }
+    }
+    
+    @Benchmark
+    @Group ("alone")
+    @GroupThreads (1)
+    @OperationsPerInvocation (ClusterMiner.BATCH_SIZE)
+    public long alone (Shared shared, Miner miner)
+    {
+        return miner.mineBatch (shared);
+    }
+    
+    @Benchmark
+    @Group ("monitored")
+    @GroupThreads (1)
+    @OperationsPerInvocation (ClusterMiner.BATCH_SIZE)
+    public long monitoredMiner (Shared shared, Miner miner)
+    {
+        return miner.mineBatch (shared);
+    }
+    
+    /**
+     * Sums every miner's counters, as the foreman does, without pause.
+     */
+    @Benchmark
+    @Group ("monitored")
+    @GroupThreads (1)
+    public long monitor (Shared shared)
+    {
+        long hashes = 0;
+        for (MinerCounters counters : shared.counters)
+        {
+            hashes += counters.getHashes();
+        }
+        
+        return hashes;
+    }
+    
+    @Benchmark
+    @Group ("neighbours")
+    @GroupThreads (2)
+    @OperationsPerInvocation (ClusterMiner.BATCH_SIZE)
+    public long neighbour (Shared shared, Miner miner)
+    {
+        return miner.mineBatch (shared);
+    }
+}
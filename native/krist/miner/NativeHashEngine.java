@@ -0,0 +1,34 @@
+package krist.miner;
+
+/**
+ * The libcrypto engine, backed by <code>NativeNonceHasher</code>. It is only
+ * supported when libcrypto could be found and called.
+ */
+public final class NativeHashEngine implements HashEngine
+{
+    @Override
+    public String getName()
+    {
+        return "native";
+    }
+    
+    @Override
+    public boolean isSupported()
+    {
+        try
+        {
+            return NativeNonceHasher.isAvailable();
+        }
+        catch (LinkageError missingForeignApi)
+        {
+            // Running on a JVM without java.lang.foreign.
+            return false;
+        }
+    }
+    
+    @Override
+    public BatchHasher newBatchHasher (Midstate midstate, int batchSize)
+    {
+        return new NativeNonceHasher (midstate, batchSize);
+    }
+}
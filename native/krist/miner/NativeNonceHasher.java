@@ -0,0 +1,235 @@
+package krist.miner;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SymbolLookup;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+import java.util.Optional;
+
+/**
+ * Runs the final SHA-256 compression of batches of nonces through the
+ * system's OpenSSL libcrypto, using the Foreign Function &amp; Memory API. On
+ * hardware with the SHA extensions libcrypto compresses much faster than any
+ * pure Java SHA-256.
+ *
+ * The one-shot <code>SHA256</code> function goes through OpenSSL 3's EVP
+ * fetching on every call and would hash the whole prefix again, so this uses
+ * <code>SHA256_Transform</code> instead: a <code>NonceHasher</code> still
+ * lays out the digits and padding and keeps the midstate, and each nonce's
+ * state and final block are staged in off-heap buffers. libcrypto has no
+ * multi-message entry point, so the batch is then compressed by a tight loop
+ * of downcalls over those buffers, and scanned against the target afterwards.
+ * Addresses are passed as raw longs so that no <code>MemorySegment</code>
+ * slices are created per nonce.
+ *
+ * If libcrypto cannot be found, or native access is not allowed, the same
+ * batches are checked with a pure Java <code>NonceHasher</code> instead.
+ * <code>isNative</code> tells which one is in use.
+ */
+public final class NativeNonceHasher implements BatchHasher
+{
+    /**
+     * Names tried, in order, when looking for libcrypto.
+     */
+    private static final String[] LIBRARY_NAMES =
+    {
+        "libcrypto.so.3", "libcrypto.so.1.1", "libcrypto.so", "libcrypto.3.dylib", "libcrypto.dylib", "libcrypto-3-x64.dll", "libcrypto.dll"
+    };
+    
+    /**
+     * The size of an OpenSSL <code>SHA256_CTX</code>, rounded up. Its first
+     * member is the eight word hash state, <code>h</code>, in native order.
+     */
+    private static final int CONTEXT_LENGTH = 128;
+    
+    /**
+     * <code>void SHA256_Transform(SHA256_CTX *c, const unsigned char *data)</code>,
+     * or null if libcrypto is unavailable.
+     */
+    private static final MethodHandle SHA256_TRANSFORM = lookupTransform();
+    
+    private final Midstate    midstate;
+    private final int         batchSize;
+    private final NonceHasher hasher;
+    
+    private final Arena         arena;
+    private final MemorySegment contexts;
+    private final MemorySegment blocks;
+    
+    /**
+     * @param midstate The prefix being mined.
+     * @param batchSize The number of nonces hashed per call to <code>findBelow</code>.
+     */
+    public NativeNonceHasher (Midstate midstate, int batchSize)
+    {
+        this.midstate  = midstate;
+        this.batchSize = batchSize;
+        this.hasher    = new NonceHasher (midstate);
+        
+        if (SHA256_TRANSFORM == null)
+        {
+            arena    = null;
+            contexts = null;
+            blocks   = null;
+            return;
+        }
+        
+        arena    = Arena.ofShared();
+        contexts = arena.allocate ((long) CONTEXT_LENGTH * batchSize, 16);
+        blocks   = arena.allocate ((long) Sha256.BLOCK_LENGTH * batchSize, 16);
+    }
+    
+    /**
+     * @return Whether or not libcrypto was found and can be called on this JVM.
+     */
+    public static boolean isAvailable()
+    {
+        return SHA256_TRANSFORM != null;
+    }
+    
+    /**
+     * @return Whether this instance hashes with libcrypto rather than the pure Java fallback.
+     */
+    public boolean isNative()
+    {
+        return arena != null;
+    }
+    
+    /**
+     * @return The number of nonces checked by each call to <code>findBelow</code>.
+     */
+    public int getBatchSize()
+    {
+        return batchSize;
+    }
+    
+    /**
+     * Hashes <code>count</code> consecutive nonces, starting at
+     * <code>firstNonce</code>, and looks for one whose top 48 bits fall below
+     * the target.
+     *
+     * @param firstNonce The non-negative nonce to start at.
+     * @param count The number of nonces to check, at most <code>getBatchSize()</code>.
+     * @param target The target which the top 48 bits must fall below.
+     * @return The first nonce below the target, or -1 if there is none.
+     */
+    @Override
+    public long findBelow (long firstNonce, int count, long target)
+    {
+        hasher.seek (firstNonce);
+        
+        if (arena == null)
+        {
+            for (int index = 0; index < count; index++, hasher.increment())
+            {
+                if (hasher.isBelow (target))
+                {
+                    return firstNonce + index;
+                }
+            }
+            
+            return -1;
+        }
+        
+        for (int slot = 0; slot < count; slot++, hasher.increment())
+        {
+            int finalBlock = hasher.prepareFinalBlock();
+            
+            MemorySegment.copy (hasher.getFinalBlockState(), 0, contexts, ValueLayout.JAVA_INT, (long) slot * CONTEXT_LENGTH, 8);
+            MemorySegment.copy (hasher.getMessage(), finalBlock, blocks, ValueLayout.JAVA_BYTE, (long) slot * Sha256.BLOCK_LENGTH, Sha256.BLOCK_LENGTH);
+        }
+        
+        long contextBase = contexts.address();
+        long blockBase   = blocks.address();
+        
+        try
+        {
+            for (int slot = 0; slot < count; slot++)
+            {
+                SHA256_TRANSFORM.invokeExact (contextBase + (long) slot * CONTEXT_LENGTH, blockBase + (long) slot * Sha256.BLOCK_LENGTH);
+            }
+        }
+        catch (Throwable downcallFailure)
+        {
+            throw new IllegalStateException ("libcrypto SHA256_Transform call failed.", downcallFailure);
+        }
+        
+        for (int slot = 0; slot < count; slot++)
+        {
+            long offset = (long) slot * CONTEXT_LENGTH;
+            
+            if (Sha256.top48 (contexts.get (ValueLayout.JAVA_INT, offset), contexts.get (ValueLayout.JAVA_INT, offset + 4)) < target)
+            {
+                return firstNonce + slot;
+            }
+        }
+        
+        return -1;
+    }
+    
+    /**
+     * @return The midstate this hasher was created for.
+     */
+    public Midstate getMidstate()
+    {
+        return midstate;
+    }
+    
+    /**
+     * Frees the off-heap buffers.
+     */
+    @Override
+    public void close()
+    {
+        if (arena != null)
+        {
+            arena.close();
+        }
+    }
+    
+    /**
+     * Finds libcrypto's <code>SHA256_Transform</code> and binds a downcall handle to it.
+     *
+     * @return The handle, or null if it could not be found or bound.
+     */
+    private static MethodHandle lookupTransform()
+    {
+        // Pointers are passed as longs, so this only works on 64 bit platforms.
+        if (ValueLayout.ADDRESS.byteSize() != Long.BYTES)
+        {
+            return null;
+        }
+        
+        try
+        {
+            Linker linker = Linker.nativeLinker();
+            
+            for (String libraryName : LIBRARY_NAMES)
+            {
+                try
+                {
+                    Optional<MemorySegment> symbol = SymbolLookup.libraryLookup (libraryName, Arena.global()).find ("SHA256_Transform");
+                    
+                    if (symbol.isPresent())
+                    {
+                        return linker.downcallHandle (symbol.get(), FunctionDescriptor.ofVoid (ValueLayout.JAVA_LONG, ValueLayout.JAVA_LONG));
+                    }
+                }
+                catch (IllegalArgumentException missingLibrary)
+                {
+                }
+            }
+            
+            System.out.println ("libcrypto not found. Falling back to pure Java SHA-256.");
+        }
+        catch (Throwable linkFailure)
+        {
+            System.out.println ("Native access unavailable (" + linkFailure.getMessage() + "). Falling back to pure Java SHA-256.");
+        }
+        
+        return null;
+    }
+}
@@ -7,6 +7,9 @@ import java.math.BigInteger;
 import java.util.HashMap;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
+import krist.miner.HashEngines;
+import krist.miner.HeadlessMiner;
+import krist.miner.SyncNode;
 import krist.miner.Utils;
 
 public class InitializationGUI extends JFrame
@@ -37,6 +40,16 @@ public class InitializationGUI extends JFrame
     
     public static void main (String[] args)
     {
+        // No window at all when running on a machine without a display.
+        if (args.length > 0 && args[0].equals (HeadlessMiner.FLAG))
+        {
+            HeadlessMiner.main (args);
+            return;
+        }
+        
+        // Find the krist node while the windows come up.
+        SyncNode.resolveInBackground();
+        
         InitializationGUI loadingScreen = new InitializationGUI();
         loadingScreen.setLoadingText ("Reading config file...");
         
@@ -46,10 +59,13 @@ public class InitializationGUI extends JFrame
         loadingScreen.setVisible (true);
         
         ManagerGUI.setCoreLimit (Utils.getConfiguredCoreLimit());
+        
+        loadingScreen.setLoadingText ("Calibrating hash engines...");
+        ManagerGUI.setHashEngine (HashEngines.select (Utils.getConfiguredHashEngine()));
         loadingScreen.dispose();
         
         // Create the actual program GUI.
-        final ManagerGUI gui = new ManagerGUI();
+        final ManagerGUI gui = ManagerGUI.create();
         
         gui.setLocation (screenDimensions.width/2 - gui.getSize().width/2, screenDimensions.height/2 - gui.getSize().height/2);
         gui.setVisible (true);
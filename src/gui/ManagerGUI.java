@@ -13,36 +13,49 @@ import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JTextField;
-import krist.miner.ClusterMiner;
-import krist.miner.Foreman;
-import krist.miner.MiningListener;
+import javax.swing.SwingUtilities;
+import krist.miner.ConfigWatcher;
+import krist.miner.Configuration;
+import krist.miner.ConfigurationListener;
+import krist.miner.HashEngine;
+import krist.miner.HashEngines;
+import krist.miner.JavaHashEngine;
+import krist.miner.MetricsServer;
+import krist.miner.MiningEngine;
+import krist.miner.MiningEngineListener;
+import krist.miner.PoolMiningEngine;
 import krist.miner.Utils;
 import krist.wallet.*;
 
-public final class ManagerGUI extends JFrame implements ActionListener, MiningListener
+public final class ManagerGUI extends JFrame implements ActionListener, MiningEngineListener, ConfigurationListener
 {
     public static final int DEFAULT_MAX_CORE_LIMIT = 1;
     public static final int MAX_CORE_LIMIT         = 8;
     
     private static int configuredCoreLimit = DEFAULT_MAX_CORE_LIMIT; /** The core limit read from the configuration file. */
     
+    /**
+     * The hash engine chosen at startup, @see <code>krist.miner.HashEngines</code>.
+     * Until one is chosen, the plain Java engine is used.
+     */
+    private static HashEngines.Choice hashEngine = null;
+    
     private static final int FIELD_WIDTH = 21;
     
     public static final int WINDOW_WIDTH  = 300;
-    public static final int WINDOW_HEIGHT = 380;
+    public static final int WINDOW_HEIGHT = 425;
     
-    public static final long nonceOffset = 10000000;
-    
-    private ArrayList<ClusterMiner> miners = null;
-    private Foreman foreman                = null;
-    private boolean isMining               = false;
-    private int     finishedMiners         = 0;
+    /**
+     * Does the actual mining. This window is only one of its clients; it is
+     * created when mining first starts.
+     */
+    private MiningEngine engine = null;
     
     /**
-     * The current block that the miner is working on. This may or may not
-     * be the latest block, however.
+     * Applies changes to the configuration file while the window is open,
+     * @see <code>onConfigurationChanged</code>.
      */
-    private String currentBlock;
+    private final ConfigWatcher configWatcher;
     
     /**
      * The menu bar which appears atop the window.
@@ -79,6 +92,7 @@ public final class ManagerGUI extends JFrame implements ActionListener, MiningLi
     public JTextField blockTextField   = null;
     public JTextField balanceTextField = null;
     public JTextField speedTextField   = null; /** This is for only the first thread! It is multiplied by the number of threads to estimate the actual speed. */
+    public JTextField engineTextField  = null;
     
     private JTextField blocksMinedField = null;
     private int        blocksMined      = 0;
@@ -88,7 +102,7 @@ public final class ManagerGUI extends JFrame implements ActionListener, MiningLi
     
     public ArrayList<JCheckBox> coreUseCheckBoxes = null;
     
-    public ManagerGUI()
+    private ManagerGUI()
     {
         // Set up our window's basic characteristics.
         super ("Grim's Krist Miner");
@@ -109,9 +123,10 @@ public final class ManagerGUI extends JFrame implements ActionListener, MiningLi
         
         /**
          * Read the configuration file for the configured core limit, if there
-         * is one.
+         * is one, and keep an eye on it from now on.
          */
-        configuredCoreLimit = Utils.getConfiguredCoreLimit();
+        configWatcher       = new ConfigWatcher();
+        configuredCoreLimit = configWatcher.getConfiguration().getCoreLimit();
         
         /**
          * Initialize all of the panel components that we'll be using.
@@ -121,6 +136,7 @@ public final class ManagerGUI extends JFrame implements ActionListener, MiningLi
         
         balanceTextField = new JTextField (FIELD_WIDTH);
         speedTextField   = new JTextField (FIELD_WIDTH);
+        engineTextField  = new JTextField (FIELD_WIDTH);
         blockTextField   = new JTextField (FIELD_WIDTH);
         blocksMinedField = new JTextField (FIELD_WIDTH);
         
@@ -132,30 +148,25 @@ public final class ManagerGUI extends JFrame implements ActionListener, MiningLi
         {
             JCheckBox coreCheckBox = new JCheckBox ("Core " + (core + 1));
             
-            coreUseCheckBoxes.add (coreCheckBox);
-            
-            // Prevent the user from using all of their cores.
-            if (core >= configuredCoreLimit)
-            {
-                coreUseCheckBoxes.get (core).setEnabled (false);
-            }
             // Make sure we can see if they're checked.
-            else
-            {
-                coreUseCheckBoxes.get (core).addActionListener (this);
-                coreUseCheckBoxes.get (core).setActionCommand ("core.use." + core);
-            }
+            coreCheckBox.addActionListener (this);
+            coreCheckBox.setActionCommand ("core.use." + core);
+            
+            coreUseCheckBoxes.add (coreCheckBox);
         }
         
         // Set the first core to always be checked.
         coreUseCheckBoxes.get (0).setSelected (true);
-        coreUseCheckBoxes.get (0).setEnabled (false);
+        applyCoreLimit (configuredCoreLimit);
         
         balanceTextField.setEditable (false);
         balanceTextField.setBorder (BorderFactory.createTitledBorder ("Balance"));
         speedTextField.setEditable (false);
         speedTextField.setBorder (BorderFactory.createTitledBorder ("Speed (Hashes/s)"));
         speedTextField.setText ("0");
+        engineTextField.setEditable (false);
+        engineTextField.setBorder (BorderFactory.createTitledBorder ("Hash Engine"));
+        engineTextField.setText (hashEngine == null ? new JavaHashEngine().getName() : hashEngine.toString());
         blockTextField.setEditable (false);
         blockTextField.setBorder (BorderFactory.createTitledBorder ("Block"));
         blocksMinedField.setEditable (false);
@@ -194,6 +205,7 @@ public final class ManagerGUI extends JFrame implements ActionListener, MiningLi
         add (minerID_textField);
         add (balanceTextField);
         add (speedTextField);
+        add (engineTextField);
         add (blockTextField);
         add (blocksMinedField);
         add (beginMiningButton);
@@ -204,26 +216,22 @@ public final class ManagerGUI extends JFrame implements ActionListener, MiningLi
         {
             add (coreUseCheckBoxes.get (minerIndex));
         }
-        
-        miners = new ArrayList();
     }
     
     /**
-     * Causes the miner to wait until all miner threads are ready to being
-     * mining.
-     * @param you 
+     * Creates the window, then has the <code>configWatcher</code> apply
+     * changes to the configuration file to it, which the constructor cannot
+     * do without handing the watcher thread a window still being built.
+     * 
+     * @return The window, not yet visible.
      */
-    public synchronized void signifyMinerReady (ClusterMiner you)
+    public static ManagerGUI create()
     {
-        try
-        {
-            this.wait();
-        }
-        catch (InterruptedException waitFaliure)
-        {
-            System.out.println ("ManagerGUI failed to wait for miner start. Stopping mining.");
-            stopMining();
-        }
+        ManagerGUI gui = new ManagerGUI();
+        gui.configWatcher.addListener (gui);
+        gui.configWatcher.start();
+        
+        return gui;
     }
     
     /**
@@ -263,16 +271,25 @@ public final class ManagerGUI extends JFrame implements ActionListener, MiningLi
              * Start the mining if we're not already mining.
              */
             case "mining.start":
-                // Not a valid miner ID: The field is empty.
-                if (!Utils.isMinerValid (minerID_textField.getText()))
-                {
-                    minerID_textField.setText ("Invalid ID or timeout.");
-                }
-                // Begin mining. Make sure we're not already mining, though.
-                else if (!isMining)
+                // The address is checked with the krist server in the
+                // background, so that a slow server cannot freeze the window.
+                beginMiningButton.setEnabled (false);
+                
+                Utils.isMinerValidAsync (minerID_textField.getText()).thenAccept (isValid -> SwingUtilities.invokeLater (() ->
                 {
-                    startMining (0);
-                }
+                    beginMiningButton.setEnabled (true);
+                    
+                    // Not a valid miner ID: The field is empty.
+                    if (!isValid)
+                    {
+                        minerID_textField.setText ("Invalid ID or timeout.");
+                    }
+                    // Begin mining. Make sure we're not already mining, though.
+                    else if (!isMining())
+                    {
+                        startMining (0);
+                    }
+                }));
 
                 break;
                 
@@ -303,47 +320,168 @@ public final class ManagerGUI extends JFrame implements ActionListener, MiningLi
                 if (transactionInterface == null)
                     transactionInterface = new TransactionGUI (this, this.getX() + WINDOW_WIDTH, this.getY());
                 break;
+                
+            /**
+             * A core check box ("core.use.N") was toggled: the miners are
+             * added or retired straight away, even while mining.
+             */
+            default:
+                if (componentName.startsWith ("core.use."))
+                {
+                    applySelectedCores();
+                }
+                
+                break;
         }
     }
     
     @Override
     /**
-     * Executed when a cluster miner finishes its mining.
+     * Executed by the <code>configWatcher</code> when the configuration file
+     * changes. The new settings apply to the running miners, which carry on
+     * with the block they are on; a new core limit goes through the core
+     * check boxes, just as if the user had toggled them.
      */
-    public void onMineCompletion(ClusterMiner finishedMiner)
+    public void onConfigurationChanged (Configuration previous, Configuration current)
     {
-        finishedMiners++;
+        HashEngine newEngine = null;
         
-        // Check if any of the miners have solved the block.
-        if (finishedMiner.hasSolvedBlock())
+        // Calibrating an automatic engine takes a moment, so not on the event
+        // thread, and not at all while the miners would skew it.
+        if (!current.getHashEngine().equals (previous.getHashEngine()))
         {
-            // Move on to the next cluster if we've solved the problem.
-            stopMining();
-            blocksMined++;
+            HashEngines.Choice choice = isMining() ? HashEngines.selectWithoutCalibrating (current.getHashEngine())
+                                                   : HashEngines.select (current.getHashEngine());
             
-            // Update all of our fields, then start mining again at the next
-            // target.
-            updateBlocksMinedField();
-            updateBalanceField();
-            startMining (0);
-            return;
+            if (choice != null)
+            {
+                setHashEngine (choice);
+                newEngine = choice.getEngine();
+            }
+        }
+        
+        synchronized (this)
+        {
+            if (engine != null)
+            {
+                if (current.getBatchSize() != previous.getBatchSize())
+                {
+                    engine.setBatchSize (current.getBatchSize());
+                }
+                
+                if (current.getPollInterval() != previous.getPollInterval())
+                {
+                    engine.setPollInterval (current.getPollInterval());
+                }
+                
+                if (newEngine != null)
+                {
+                    engine.setHashEngine (newEngine);
+                }
+            }
         }
         
-        // If no one has solved it yet, let's try again at a different starting point.
-        // Also, make sure that we're still on the same block.
-        if (miners.size() == finishedMiners && miners.size() > 0)
+        SwingUtilities.invokeLater (() ->
         {
-            stopMining();
+            engineTextField.setText (getHashEngine().toString());
             
-            if (currentBlock.equals (Utils.getLastBlock()))
+            if (current.getCoreLimit() != previous.getCoreLimit())
             {
-                startMining (miners.get (miners.size() - 1).getNonce());
+                applyCoreLimit (current.getCoreLimit());
             }
-            else
+        });
+    }
+    
+    /**
+     * Enables the core check boxes up to the given limit, and clears and
+     * disables the rest. The first core is always used, so its box stays
+     * checked and disabled. The miners follow the boxes at once.
+     * 
+     * @param coreLimit The number of cores the user may use.
+     */
+    private void applyCoreLimit (int coreLimit)
+    {
+        setCoreLimit (coreLimit);
+        
+        for (int core = 1; core < MAX_CORE_LIMIT; core++)
+        {
+            // Prevent the user from using all of their cores.
+            if (core >= configuredCoreLimit)
+            {
+                coreUseCheckBoxes.get (core).setSelected (false);
+            }
+            
+            coreUseCheckBoxes.get (core).setEnabled (core < configuredCoreLimit);
+        }
+        
+        coreUseCheckBoxes.get (0).setEnabled (false);
+        applySelectedCores();
+    }
+    
+    /**
+     * Starts or retires miners until there is one for every selected core.
+     * Work on the current block carries on; it is only shared out between
+     * more or fewer miners. Until mining first starts there are no miners,
+     * and this does nothing.
+     */
+    public synchronized void applySelectedCores()
+    {
+        if (engine != null)
+        {
+            engine.setMinerCount (countSelectedCores());
+        }
+    }
+    
+    /**
+     * @return The number of core check boxes which are checked, within the core limit.
+     */
+    private int countSelectedCores()
+    {
+        int selectedCores = 0;
+        for (int core = 0; core < configuredCoreLimit; core++)
+        {
+            if (coreUseCheckBoxes.get (core).isSelected())
             {
-                startMining (0);
+                selectedCores++;
             }
         }
+        
+        return selectedCores;
+    }
+    
+    @Override
+    /**
+     * Executed when the engine hands the miners work for a block.
+     */
+    public void onWorkChanged (String block, long target)
+    {
+        SwingUtilities.invokeLater (() -> blockTextField.setText (block));
+    }
+    
+    @Override
+    /**
+     * Executed when a miner solves the block. The engine moves on to the next
+     * block by itself.
+     */
+    public void onBlockMined (String block, long nonce, int blocksMined)
+    {
+        SwingUtilities.invokeLater (() ->
+        {
+            this.blocksMined = blocksMined;
+            
+            // Update all of our fields.
+            updateBlocksMinedField();
+            updateBalanceField();
+        });
+    }
+    
+    @Override
+    /**
+     * Executed by the engine with the latest hash rate.
+     */
+    public void onHashRate (long hashesPerSecond)
+    {
+        SwingUtilities.invokeLater (() -> updateSpeedField (hashesPerSecond));
     }
     
     /**
@@ -375,18 +513,20 @@ public final class ManagerGUI extends JFrame implements ActionListener, MiningLi
      * Updates the <code>balanceTextField</code> with the latest balance
      * from the krist server for the address retrieved from
      * <code>getKristAddress</code>, the contents of the <code>minerID_textField</code>.
+     * 
+     * The balance is fetched in the background, so this returns at once even
+     * if the krist server cannot be reached. A balance looked up lately, as
+     * by the address check on starting, is shown without asking again.
      */
     public void updateBalanceField()
     {
         balanceTextField.setText ("Retrieving balance...");
         
-        String balance = null;
-        while (balance == null)
+        Utils.getBalanceAsync (minerID_textField.getText()).whenComplete ((balance, failure) ->
         {
-            balance = Utils.getBalance (minerID_textField.getText());
-        }
-        
-        balanceTextField.setText (balance + " KST");
+            String text = failure == null && balance != null ? balance + " KST" : "Balance unavailable";
+            SwingUtilities.invokeLater (() -> balanceTextField.setText (text));
+        });
     }
     
     /**
@@ -405,93 +545,56 @@ public final class ManagerGUI extends JFrame implements ActionListener, MiningLi
      */
     public boolean isMining()
     {
-        return isMining;
+        return engine != null && engine.isMining();
     }
     
     /**
-     * Starts the manager mining from the given nonce offset. For every cluster
-     * miner, the one in front starts @see <code>gui.ManagerGUI.NONCE_OFFSET</code>
-     * nonces further ahead. This way, the miners don't do the same work as the
-     * others.
+     * Starts the engine mining from the given nonce, with one miner for every
+     * selected core. The miners share the nonce space out between themselves.
      * 
-     * @param startingNonce The nonce offset at which to start.
+     * @param startingNonce The nonce at which to start.
      */
-    public void startMining (long startingNonce)
+    public synchronized void startMining (long startingNonce)
     {
-        if (!isMining)
+        if (!isMining())
         {
             // Update the balance field.
             updateBalanceField();
             
-            // Destroy the old miner threads.
-            miners = new ArrayList();
-
-            isMining       = true;
-            finishedMiners = 0;
-            
-            currentBlock  = Utils.getLastBlock();
-            long   target = Utils.getWork();
-            blockTextField.setText (currentBlock);
-            
             /**
-             * Spawn a new set of <code>krist.miner.ClusterMiner</code> threads which will
-             * run on the number of cores configured.
+             * The <code>krist.miner.ClusterMiner</code> threads live in the
+             * engine for as long as the program runs. Here we only make sure
+             * that there is one for every selected core.
              */
-            for (int miner = 0; miner < configuredCoreLimit; miner++)
-            {
-                if (coreUseCheckBoxes.get (miner).isSelected())
-                {
-                    miners.add (new ClusterMiner (this, minerID_textField.getText(), currentBlock, target, startingNonce + nonceOffset * miner));
-                    new Thread (miners.get (miner)).start();
-                }
-            }
-            
-            try
-            {
-                Thread.sleep (100);
-            }
-            catch (Exception e)
+            if (engine == null)
             {
+                PoolMiningEngine poolEngine = PoolMiningEngine.create (getHashEngine().getEngine());
+                MetricsServer.startConfigured (poolEngine);
+                
+                engine = poolEngine;
+                engine.setBatchSize (configWatcher.getConfiguration().getBatchSize());
+                engine.setPollInterval (configWatcher.getConfiguration().getPollInterval());
+                engine.addListener (this);
             }
             
-            /**
-             * Create a new <code>krist.miner.Foreman</code> object to
-             * "supervise" the new miners.
-             * 
-             * Essentially, the foreman will serve to compute the hash rate
-             * of the program as a whole, not just each miner individually.
-             */
-            foreman = new Foreman (this, miners);
-            new Thread (foreman).start();
-            
-            /*
-                Inform all of the miners which have called 'signifyMinerReady,'
-                allowing them to start mining.
-            
-                This way, the miners won't begin before the foreman does.
-            */
-            synchronized (this)
-            {
-                this.notifyAll();
-            }
+            engine.setMinerCount (countSelectedCores());
+            engine.start (minerID_textField.getText(), startingNonce);
         }
     }
     
     /**
-     * Stops the miner completely. The current foreman is also disposed of.
+     * Stops the miner completely. The miner threads stay alive, idle, until
+     * mining starts again.
      *
      * This method only works if the miner is currently mining, otherwise it
      * does nothing.
      */
-    public void stopMining()
+    public synchronized void stopMining()
     {
-        if (isMining)
+        if (isMining())
         {
             blockTextField.setText ("");
-            isMining = false;
-            
-            // Stop the foreman explicitly.
-            foreman.stopMining();
+            engine.stop();
         }
     }
     
@@ -508,4 +611,28 @@ public final class ManagerGUI extends JFrame implements ActionListener, MiningLi
             configuredCoreLimit = coreLimit;
         }
     }
+    
+    /**
+     * Sets the hash engine which new miners will use. This is chosen once at
+     * startup by <code>krist.miner.HashEngines.select</code>.
+     * 
+     * @param engine The chosen engine and its measured hash rate.
+     */
+    public static synchronized void setHashEngine (HashEngines.Choice engine)
+    {
+        hashEngine = engine;
+    }
+    
+    /**
+     * @return The hash engine in use, choosing one from the configuration file if none was set.
+     */
+    public static synchronized HashEngines.Choice getHashEngine()
+    {
+        if (hashEngine == null)
+        {
+            hashEngine = HashEngines.select (Utils.getConfiguredHashEngine());
+        }
+        
+        return hashEngine;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,53 @@
+package krist.miner;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with jitter: each delay is twice as long as the last,
+ * up to a ceiling, and a random half of it is shaved off so that several
+ * retrying threads (or miners) do not all come back at the same moment.
+ */
+public final class Backoff
+{
+    private final long baseMillis;
+    private final long maxMillis;
+    
+    private int attempts;
+    
+    /**
+     * @param baseMillis The delay before the first retry, before jitter.
+     * @param maxMillis The longest delay, before jitter.
+     */
+    public Backoff (long baseMillis, long maxMillis)
+    {
+        this.baseMillis = baseMillis;
+        this.maxMillis  = maxMillis;
+    }
+    
+    /**
+     * @return How long to wait before the next attempt, in milliseconds.
+     */
+    public synchronized long nextDelay()
+    {
+        long ceiling = Math.min (maxMillis, baseMillis << Math.min (attempts, 30));
+        attempts++;
+        
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong (ceiling / 2 + 1);
+    }
+    
+    /**
+     * Starts again from the base delay, after a success.
+     */
+    public synchronized void reset()
+    {
+        attempts = 0;
+    }
+    
+    /**
+     * @return The number of delays handed out since the last reset.
+     */
+    public synchronized int getAttempts()
+    {
+        return attempts;
+    }
+}
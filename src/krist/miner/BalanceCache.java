@@ -0,0 +1,139 @@
+package krist.miner;
+
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Remembers the krist server's answers to balance lookups for a while, so
+ * that checking an address and showing its balance, over and over as mining
+ * is stopped and started, does not cost a round trip every time.
+ *
+ * An answer is kept for the time to live given to the constructor, @see
+ * <code>Utils.getConfiguredBalanceCacheTTL</code>, or until it is
+ * invalidated, as it should be whenever a balance is known to have changed:
+ * after a solved block or a transaction. Callers asking for the same address
+ * while a lookup is under way share that lookup. Failed lookups are not
+ * remembered.
+ */
+public final class BalanceCache
+{
+    /**
+     * The default time to live of an answer, in milliseconds.
+     */
+    public static final long DEFAULT_TIME_TO_LIVE = 30000;
+    
+    private final Function<String, CompletableFuture<String>> fetcher;
+    private final long                                        timeToLiveMillis;
+    
+    private final HashMap<String, Entry>                     answers  = new HashMap<>();
+    private final HashMap<String, CompletableFuture<String>> inFlight = new HashMap<>();
+    
+    /**
+     * @param fetcher Looks up an address's balance on the krist server.
+     * @param timeToLiveMillis How long an answer is kept; 0 to keep none, and only share lookups under way.
+     */
+    public BalanceCache (Function<String, CompletableFuture<String>> fetcher, long timeToLiveMillis)
+    {
+        this.fetcher          = fetcher;
+        this.timeToLiveMillis = timeToLiveMillis;
+    }
+    
+    /**
+     * @param address The krist address to look up.
+     * @return The server's answer, to come; at once if it is known. Completes exceptionally if the lookup fails.
+     */
+    public CompletableFuture<String> get (final String address)
+    {
+        final CompletableFuture<String> newLookup = new CompletableFuture<>();
+        
+        synchronized (this)
+        {
+            Entry answer = answers.get (address);
+            if (answer != null && System.nanoTime() - answer.answeredAt < timeToLiveMillis * 1000000)
+            {
+                return CompletableFuture.completedFuture (answer.balance);
+            }
+            
+            CompletableFuture<String> lookup = inFlight.get (address);
+            if (lookup != null)
+            {
+                return lookup;
+            }
+            
+            inFlight.put (address, newLookup);
+        }
+        
+        // Outside the lock: finding a node to ask may take a while. A fetcher
+        // which throws fails this lookup like any other, rather than leaving
+        // it under way for good.
+        CompletableFuture<String> lookup;
+        try
+        {
+            lookup = fetcher.apply (address);
+        }
+        catch (RuntimeException fetchFailure)
+        {
+            lookup = CompletableFuture.failedFuture (fetchFailure);
+        }
+        
+        lookup.whenComplete ((balance, failure) ->
+        {
+            synchronized (BalanceCache.this)
+            {
+                // An invalidation since the lookup started makes its answer suspect.
+                if (inFlight.get (address) == newLookup)
+                {
+                    inFlight.remove (address);
+                    if (failure == null)
+                    {
+                        answers.put (address, new Entry (balance));
+                    }
+                }
+            }
+            
+            if (failure == null)
+            {
+                newLookup.complete (balance);
+            }
+            else
+            {
+                newLookup.completeExceptionally (failure);
+            }
+        });
+        
+        return newLookup;
+    }
+    
+    /**
+     * Forgets the answer for an address, and any lookup of it under way, so
+     * that the next call to <code>get</code> asks the server again.
+     *
+     * @param address The krist address whose balance has changed.
+     */
+    public synchronized void invalidate (String address)
+    {
+        answers.remove (address);
+        inFlight.remove (address);
+    }
+    
+    /**
+     * Forgets every answer and every lookup under way.
+     */
+    public synchronized void invalidateAll()
+    {
+        answers.clear();
+        inFlight.clear();
+    }
+    
+    private static final class Entry
+    {
+        private final String balance;
+        private final long   answeredAt = System.nanoTime();
+        
+        Entry (String balance)
+        {
+            this.balance = balance;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package krist.miner;
+
+/**
+ * An odometer which keeps the base 36 digits of a non-negative nonce as ASCII
+ * bytes inside a hash buffer and counts upwards in place.
+ *
+ * The digits are always byte for byte identical to
+ * <code>Long.toString(nonce, 36)</code>. Incrementing usually only touches
+ * the last byte; a carry walks left one digit at a time and the number only
+ * grows by a digit when every digit was 'z'.
+ */
+final class Base36Counter
+{
+    /**
+     * Returned by <code>increment</code> when the number gained a digit.
+     */
+    static final int GREW = -1;
+    
+    private final byte[] buffer;
+    private final int    offset;
+    
+    private long value;
+    private int  length;
+    
+    /**
+     * @param buffer Array in which the digits are kept.
+     * @param offset Index of the most significant digit within <code>buffer</code>.
+     */
+    Base36Counter (byte[] buffer, int offset)
+    {
+        this.buffer = buffer;
+        this.offset = offset;
+    }
+    
+    /**
+     * Writes the digits of the given nonce into the buffer.
+     * 
+     * @param nonce The non-negative nonce to count from.
+     */
+    void set (long nonce)
+    {
+        if (nonce < 0)
+        {
+            throw new IllegalArgumentException ("Cannot count from a negative nonce: " + nonce);
+        }
+        
+        value  = nonce;
+        length = NonceHasher.writeNonce (buffer, offset, nonce);
+    }
+    
+    /**
+     * Moves the digits in the buffer on to the next nonce.
+     * 
+     * @return Index in the buffer of the leftmost digit that changed, or
+     *         <code>GREW</code> if the number gained a digit (and so the
+     *         bytes after it have to be rewritten).
+     */
+    int increment()
+    {
+        value++;
+        
+        for (int index = offset + length - 1; index >= offset; index--)
+        {
+            byte digit = buffer[index];
+            
+            if (digit != 'z')
+            {
+                buffer[index] = (byte) (digit == '9' ? 'a' : digit + 1);
+                return index;
+            }
+            
+            buffer[index] = '0';
+        }
+        
+        // Every digit rolled over: "zz...z" + 1 is "100...0".
+        buffer[offset]          = '1';
+        buffer[offset + length] = '0';
+        length++;
+        
+        return GREW;
+    }
+    
+    /**
+     * Moves the digits in the buffer <code>count</code> nonces further on.
+     * 
+     * @param count The non-negative amount to add.
+     * @return Index in the buffer of the leftmost digit that changed, or
+     *         <code>GREW</code> if the number gained any digits.
+     */
+    int add (int count)
+    {
+        int carry = count;
+        int index = offset + length - 1;
+        
+        for (; carry != 0 && index >= offset; index--)
+        {
+            byte digit = buffer[index];
+            int  sum   = (digit <= '9' ? digit - '0' : digit - 'a' + 10) + carry;
+            
+            carry         = sum / 36;
+            sum           = sum % 36;
+            buffer[index] = (byte) (sum < 10 ? '0' + sum : 'a' + sum - 10);
+        }
+        
+        if (carry != 0)
+        {
+            set (value + count);
+            return GREW;
+        }
+        
+        value += count;
+        return index + 1;
+    }
+    
+    /**
+     * @return The nonce the digits currently spell out.
+     */
+    long getValue()
+    {
+        return value;
+    }
+    
+    /**
+     * @return The number of digits currently in the buffer.
+     */
+    int getLength()
+    {
+        return length;
+    }
+}
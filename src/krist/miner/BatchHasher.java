@@ -0,0 +1,27 @@
+package krist.miner;
+
+/**
+ * Per-thread hashing state created by a <code>HashEngine</code> for one
+ * prefix. Hashes a batch of consecutive nonces and reports whether any of
+ * them solves the target.
+ */
+public interface BatchHasher extends AutoCloseable
+{
+    /**
+     * Hashes <code>count</code> consecutive nonces, starting at
+     * <code>firstNonce</code>, and looks for one whose top 48 bits fall below
+     * the target.
+     *
+     * @param firstNonce The non-negative nonce to start at.
+     * @param count The number of nonces to check.
+     * @param target The target which the top 48 bits must fall below.
+     * @return The first nonce below the target, or -1 if there is none.
+     */
+    public long findBelow (long firstNonce, int count, long target);
+    
+    /**
+     * Releases anything the hasher holds outside of the heap.
+     */
+    @Override
+    public void close();
+}
@@ -0,0 +1,119 @@
+package krist.miner;
+
+import java.util.concurrent.CompletionException;
+
+/**
+ * Polls the krist server for the last block on its own thread, so that a new
+ * block is noticed within one poll interval rather than whenever the miners
+ * next finish a stretch of nonces.
+ *
+ * Every block it sees is handed to <code>PoolMiningEngine.onBlockPolled</code>,
+ * which swaps new work into the running miners if the block has changed, or
+ * hands them their first work. The legacy krist API has no long-polling
+ * endpoint, so this is plain polling.
+ */
+public class BlockWatcher implements Runnable
+{
+    private final PoolMiningEngine engine;
+    private final Backoff          backoff = new Backoff (500, 30000);
+    
+    private volatile boolean isWatching;
+    
+    /**
+     * @param engine The engine to report blocks to. Its poll interval is read before every poll.
+     */
+    public BlockWatcher (PoolMiningEngine engine)
+    {
+        this.engine     = engine;
+        this.isWatching = true;
+    }
+    
+    /**
+     * Polls straight away, for the engine's first work, and then every poll
+     * interval. After a failed poll it backs off instead, so that a node
+     * which is down is not hammered.
+     */
+    @Override
+    public void run()
+    {
+        long previousPollAt = System.nanoTime();
+        long polledAt       = previousPollAt;
+        long retryDelay     = 0;
+        
+        while (isWatching)
+        {
+            try
+            {
+                if (!awaitNextPoll (polledAt, retryDelay))
+                {
+                    break;
+                }
+            }
+            catch (InterruptedException sleepFailure)
+            {
+                return;
+            }
+            
+            polledAt = System.nanoTime();
+            try
+            {
+                engine.onBlockPolled (Utils.getLastBlockAsync().join(), previousPollAt, polledAt);
+                previousPollAt = polledAt;
+                
+                backoff.reset();
+                retryDelay = -1;
+            }
+            catch (CompletionException pollFailure)
+            {
+                // The miners carry on with what they have.
+                retryDelay = backoff.nextDelay();
+                System.out.println ("Failed to poll for the last block (" + pollFailure.getCause() + "). Trying again in " + retryDelay + " ms.");
+            }
+        }
+    }
+    
+    /**
+     * Waits until it is time for the next poll. The engine's poll interval
+     * is read again whenever the watcher is woken, so a new one applies at
+     * once, @see <code>onPollIntervalChanged</code>.
+     * 
+     * @param lastPollAt When the last poll was started, by <code>System.nanoTime</code>.
+     * @param retryDelay Milliseconds to wait after a failed poll, or -1 for the poll interval.
+     * @return Whether or not to poll; false once the watcher has been stopped.
+     */
+    private synchronized boolean awaitNextPoll (long lastPollAt, long retryDelay) throws InterruptedException
+    {
+        while (isWatching)
+        {
+            long delay     = retryDelay < 0 ? engine.getPollInterval() : retryDelay;
+            long remaining = delay - (System.nanoTime() - lastPollAt) / 1000000;
+            
+            if (remaining <= 0)
+            {
+                return true;
+            }
+            
+            wait (remaining);
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Wakes the watcher if it is waiting for its next poll, so that it waits
+     * for the engine's new poll interval instead.
+     */
+    public synchronized void onPollIntervalChanged()
+    {
+        notifyAll();
+    }
+    
+    /**
+     * Stops the watcher, waking it if it is waiting for its next poll.
+     */
+    public synchronized void stopWatching()
+    {
+        isWatching = false;
+        notifyAll();
+    }
+}
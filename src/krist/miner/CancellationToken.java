@@ -0,0 +1,79 @@
+package krist.miner;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tells the miners working on a piece of work to let go of it, and measures
+ * how long they take to do so.
+ *
+ * Miners <code>join</code> the token when they start on the work, poll
+ * <code>isCancelled</code> between batches, and <code>leave</code> once they
+ * have stopped. The flag is volatile, so a cancellation is seen at the very
+ * next check. When the last miner leaves a cancelled token, the time since
+ * <code>cancel</code> is recorded.
+ */
+public final class CancellationToken
+{
+    private final AtomicInteger holders    = new AtomicInteger();
+    private final AtomicBoolean isReported = new AtomicBoolean();
+    
+    private volatile boolean      isCancelled;
+    private volatile long         cancelledAt;
+    private volatile LatencyStats stopLatency;
+    
+    /**
+     * @return Whether or not the work has been withdrawn.
+     */
+    public boolean isCancelled()
+    {
+        return isCancelled;
+    }
+    
+    /**
+     * Cancels the work. Only the first call has any effect.
+     * 
+     * @param stopLatency Where to record how long the miners take to let go of the work.
+     */
+    synchronized void cancel (LatencyStats stopLatency)
+    {
+        if (isCancelled)
+        {
+            return;
+        }
+        
+        this.stopLatency = stopLatency;
+        this.cancelledAt = System.nanoTime();
+        this.isCancelled = true;
+        
+        // Nobody to wait for, so there is nothing worth recording.
+        if (holders.get() == 0)
+        {
+            isReported.set (true);
+        }
+    }
+    
+    /**
+     * Called by a miner before it hashes anything for the work.
+     */
+    void join()
+    {
+        holders.incrementAndGet();
+    }
+    
+    /**
+     * Called by a miner once it has stopped hashing for the work.
+     */
+    void leave()
+    {
+        /**
+         * <code>cancel</code> writes the flag before it reads the count, and
+         * this decrements the count before it reads the flag, so the last
+         * miner out cannot miss a cancellation.
+         */
+        if (holders.decrementAndGet() == 0 && isCancelled && isReported.compareAndSet (false, true))
+        {
+            stopLatency.record (System.nanoTime() - cancelledAt);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package krist.miner;
+
+/**
+ * Stops requests to a node which keeps failing, so that callers fail at once
+ * instead of each waiting out a timeout.
+ *
+ * While closed, every request goes through. After <code>failureThreshold</code>
+ * failures in a row the breaker opens, and every request is refused until a
+ * <code>Backoff</code> delay has passed. Then a single trial request is let
+ * through: if it succeeds the breaker closes again, and if it fails the
+ * breaker opens for a longer delay.
+ */
+public final class CircuitBreaker
+{
+    private enum State
+    {
+        CLOSED, OPEN, HALF_OPEN
+    }
+    
+    private final String  name;
+    private final int     failureThreshold;
+    private final Backoff backoff;
+    
+    private State state = State.CLOSED;
+    private int   failures;
+    private long  openUntil;
+    
+    /**
+     * @param name What the breaker protects, for the log.
+     * @param failureThreshold The number of failures in a row which opens the breaker.
+     * @param backoff How long to stay open after each failure.
+     */
+    public CircuitBreaker (String name, int failureThreshold, Backoff backoff)
+    {
+        this.name             = name;
+        this.failureThreshold = failureThreshold;
+        this.backoff          = backoff;
+    }
+    
+    /**
+     * Asks whether a request may be made now. A caller which is allowed
+     * through must report the outcome to <code>recordSuccess</code> or
+     * <code>recordFailure</code>.
+     * 
+     * @return Whether or not to make the request.
+     */
+    public synchronized boolean allowRequest()
+    {
+        switch (state)
+        {
+            case CLOSED:
+                return true;
+                
+            case OPEN:
+                if (System.currentTimeMillis() >= openUntil)
+                {
+                    state = State.HALF_OPEN;
+                    return true;
+                }
+                
+                return false;
+                
+            default:
+                // A trial request is already out.
+                return false;
+        }
+    }
+    
+    public synchronized void recordSuccess()
+    {
+        if (state != State.CLOSED)
+        {
+            System.out.println ("Connection to " + name + " restored.");
+        }
+        
+        state    = State.CLOSED;
+        failures = 0;
+        backoff.reset();
+    }
+    
+    public synchronized void recordFailure()
+    {
+        failures++;
+        
+        if (state == State.HALF_OPEN || failures >= failureThreshold)
+        {
+            long delay = backoff.nextDelay();
+            
+            state     = State.OPEN;
+            openUntil = System.currentTimeMillis() + delay;
+            System.out.println ("Lost connection to " + name + ". Trying again in " + delay + " ms.");
+        }
+    }
+    
+    /**
+     * @return The number of failures in a row, 0 if the last request succeeded.
+     */
+    public synchronized int getFailures()
+    {
+        return failures;
+    }
+    
+    /**
+     * @return Whether or not requests are currently being refused.
+     */
+    public synchronized boolean isOpen()
+    {
+        return state != State.CLOSED;
+    }
+}
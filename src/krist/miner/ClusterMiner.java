@@ -1,28 +1,47 @@
 package krist.miner;
 
-import gui.ManagerGUI;
-import java.math.BigInteger;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * A long-lived mining thread belonging to a <code>MinerPool</code>.
+ * 
+ * The miner parks while the pool has no work. Given work, it keeps claiming
+ * chunks of nonces from the work's <code>NonceDispenser</code> until the work
+ * is cancelled, so miners never overlap and never wait for each other. The
+ * work's <code>CancellationToken</code> is checked between batches of
+ * <code>MinerPool.getBatchSize()</code> nonces. A retired miner finishes the
+ * chunk it has claimed before its thread ends.
+ *
+ * Progress is counted in locals and fields only the miner thread touches,
+ * and published to its <code>MinerCounters</code> once a batch, so that
+ * reading it from other threads takes no lock on the miner.
+ */
 public class ClusterMiner implements Runnable
 {
-    private final long       target;
-    private final String     block;
-    private final ManagerGUI gui;
-    private final String     minerID;
-    private final long       startNonce;
+    /**
+     * The default number of nonces handed to the hash engine at a time, and
+     * so between checks for cancelled work.
+     */
+    public static final int BATCH_SIZE = 4096;
+    
+    private final MinerPool     pool;
+    private final MinerCounters counters = new MinerCounters();
     
-    private long    nonce;
-    private boolean isComplete;
-    private boolean solvedBlock;
+    private Thread           thread;
+    private volatile boolean isRetired;
     
-    public ClusterMiner (ManagerGUI gui, String minerID, String block, long target, long nonce)
+    /**
+     * Only ever touched by the miner thread; others read <code>counters</code>.
+     */
+    private long hashes;
+    private long batches;
+    
+    /**
+     * @param pool The pool this miner takes its work from.
+     */
+    ClusterMiner (MinerPool pool)
     {
-        this.gui        = gui;
-        this.minerID    = minerID;
-        this.startNonce = nonce;
-        this.nonce      = nonce;
-        this.target     = target;
-        this.block      = block;
+        this.pool = pool;
     }
     
     @Override
@@ -36,82 +55,234 @@ public class ClusterMiner implements Runnable
      */
     public void run()
     {
-        // Inform the manager that we're ready to begin mining.
-        gui.signifyMinerReady (this);
-        long newBlock;
-
-        /**
-         * Our target can be converted to its series of bytes. From there, we
-         * only need to compare the first non-zero byte in the calculated hash.
-         * 
-         * How do.
-         */
+        MiningWork  current   = null;
+        HashEngine  engine    = null;
+        BatchHasher hasher    = null;
+        int         batchSize = 0;
         
-        for (int hashIteration = 0; hashIteration < ManagerGUI.nonceOffset; hashIteration++, nonce++)
+        try
         {
-            /**
-             * This is shit design.
-             * @see<code>ManagerGUI.onMineCompletion</code>.
-             *
-             * If this doesn't happen, then when the mining is force stopped,
-             * the miner will trigger its completion, making the ManagerGUI
-             * think that we just need to increase the range, leading the
-             * program to continue mining.
-             */
-            if (!gui.isMining())
+            MiningWork work;
+            
+            while ((work = pool.awaitWork (this)) != null)
             {
-                return;
+                if (work != current)
+                {
+                    leave (current);
+                    work.getToken().join();
+                }
+                
+                // New block, target, engine or batch size: get a fresh hasher.
+                if (work != current || engine != pool.getEngine() || batchSize != pool.getBatchSize())
+                {
+                    if (hasher != null)
+                    {
+                        hasher.close();
+                    }
+                    
+                    current   = work;
+                    engine    = pool.getEngine();
+                    batchSize = pool.getBatchSize();
+                    hasher    = engine.newBatchHasher (work.getMidstate(), batchSize);
+                }
+                
+                NonceDispenser dispenser  = work.getDispenser();
+                long           startNonce = dispenser.claim();
+                
+                if (startNonce < 0)
+                {
+                    System.out.println ("Ran out of nonces for block " + work.getBlock() + ".");
+                    pool.retire (work);
+                    continue;
+                }
+                
+                // Every NONCE_OFFSET nonces, whoever gets there first lets the
+                // listener check on the block.
+                if (dispenser.startsInterval (startNonce, MinerPool.NONCE_OFFSET))
+                {
+                    pool.getListener().onMineCompletion (this);
+                }
+                
+                MiningChunkEvent event = new MiningChunkEvent();
+                event.begin();
+                
+                long endNonce      = startNonce + dispenser.getChunkLength (startNonce);
+                long hashesBefore  = hashes;
+                long batchesBefore = batches;
+                long solution      = mineRange (work, hasher, batchSize, startNonce, endNonce);
+                
+                if (event.shouldCommit())
+                {
+                    event.block      = work.getBlock();
+                    event.startNonce = startNonce;
+                    event.endNonce   = endNonce;
+                    event.hashes     = hashes - hashesBefore;
+                    event.batches    = batches - batchesBefore;
+                    event.batchSize  = batchSize;
+                    event.engine     = engine.getName();
+                    event.outcome    = solution >= 0 ? "solved" : work.getToken().isCancelled() ? "cancelled" : "completed";
+                    event.commit();
+                }
+                
+                // Only a chunk hashed to the end counts towards the checkpoint.
+                if (solution < 0 && !work.getToken().isCancelled())
+                {
+                    work.onChunkCompleted (startNonce);
+                }
+                
+                // Let go of cancelled work straight away, rather than once
+                // there is new work to move on to.
+                if (work.getToken().isCancelled())
+                {
+                    leave (current);
+                    current = null;
+                }
+                
+                // Take our hard earned KST, and get mining on the next block.
+                if (solution >= 0)
+                {
+                    pool.getListener().onBlockSolved (this, work, solution);
+                }
             }
-
-            // Use Yevano's method of computing a nonce: convert a long to a base 36 number.
-            newBlock = Long.parseLong (Utils.subSHA256(minerID + block + Long.toString(nonce, 36), 12), 16);
+        }
+        finally
+        {
+            leave (current);
+            
+            if (hasher != null)
+            {
+                hasher.close();
+            }
+            
+            pool.onRetired (this);
+        }
+    }
+    
+    private static void leave (MiningWork work)
+    {
+        if (work != null)
+        {
+            work.getToken().leave();
+        }
+    }
+    
+    /**
+     * Mines the nonces from <code>startNonce</code> up to, but not including,
+     * <code>endNonce</code>, unless the work is cancelled first.
+     * 
+     * @return The nonce which solved the block, if this miner solved it and withdrew the work, or -1.
+     */
+    private long mineRange (MiningWork work, BatchHasher hasher, int batchSize, long startNonce, long endNonce)
+    {
+        CancellationToken token  = work.getToken();
+        long              target = work.getTarget();
+        long              nonce  = startNonce;
+        
+        StartupMetrics.markFirstHash();
+        
+        while (nonce < endNonce)
+        {
+            // Stopped or moved on to another block. A retired miner carries
+            // on to the end of the chunk, which nobody else will hash.
+            if (token.isCancelled())
+            {
+                return -1;
+            }
+            
+            int  count    = (int) Math.min (batchSize, endNonce - nonce);
+            long solution = hasher.findBelow (nonce, count, target);
+            
+            batches++;
             
             /**
-             * Calculated a smaller hash? Submit it, take our hard earned KST,
-             * and get mining on the next block.
+             * Calculated a smaller hash? Make sure that the full digest
+             * agrees, then withdraw the work so that every miner stops.
              */
-            if (newBlock < target)
+            if (solution >= 0)
             {
-                Utils.submitSolution(minerID, nonce);
-                solvedBlock = true;
-
-                gui.stopMining();
-                break;
+                hashes += solution - nonce + 1;
+                nonce   = solution;
+                
+                if (Utils.isSolution (work.getMinerID(), work.getBlock(), nonce, target))
+                {
+                    counters.publish (hashes, batches, nonce);
+                    return pool.retire (work) ? nonce : -1;
+                }
+                
+                nonce++;
+            }
+            else
+            {
+                hashes += count;
+                nonce  += count;
             }
+            
+            counters.publish (hashes, batches, nonce);
         }
-
-        isComplete = true;
-        gui.onMineCompletion(this);
+        
+        return -1;
+    }
+    
+    void setThread (Thread thread)
+    {
+        this.thread = thread;
     }
     
     /**
-     * Checks whether or not this miner has solved the block that
-     * it was given upon instantiation.
-     * 
-     * @return Whether or not this miner has solved its block.
+     * Wakes the miner if it is parked waiting for work.
      */
-    public boolean hasSolvedBlock()
+    void wake()
     {
-        return solvedBlock;
+        LockSupport.unpark (thread);
+    }
+    
+    /**
+     * Makes the miner finish its current chunk and end its thread.
+     */
+    void retire()
+    {
+        isRetired = true;
+        wake();
+    }
+    
+    boolean isRetired()
+    {
+        return isRetired;
     }
     
     /**
      * Calculates the change in nonces that this miner has made as a way
-     * to measure its progress and, consequently, hash rate.
+     * to measure its progress and, consequently, hash rate. Safe to call
+     * from any thread, and never blocks the miner.
      * 
-     * @return The difference between this miner's starting nonce and current nonce.
+     * @return The number of nonces this miner has hashed since it was started, as of its last batch.
+     */
+    public long getChangeInNonce()
+    {
+        return counters.getHashes();
+    }
+    
+    /**
+     * @return The number of batches this miner has handed to its hash engine since it was started.
+     */
+    public long getBatches()
+    {
+        return counters.getBatches();
+    }
+    
+    /**
+     * @return The name of this miner's thread.
      */
-    public synchronized long getChangeInNonce()
+    public String getName()
     {
-        return nonce - startNonce;
+        return thread.getName();
     }
     
     /**
-     * @return The current nonce of this miner. Used to compute the next offset
-     * at which the miner should start its next batch of <code>ClusterMiner</code> threads.
+     * @return The current nonce of this miner, as of its last batch.
      */
     public long getNonce()
     {
-        return nonce;
+        return counters.getNonce();
     }
 }
@@ -0,0 +1,218 @@
+package krist.miner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the configuration file on its own thread, and tells its
+ * <code>ConfigurationListener</code>s whenever the settings in it change, so
+ * that they apply to the running miner without a restart.
+ *
+ * The file's folder is watched with a <code>WatchService</code>. Some
+ * platforms only poll for changes every few seconds behind that, so the
+ * file's size and modification time are also checked every
+ * <code>CHECK_INTERVAL_MILLIS</code>; either way, a change is picked up within
+ * about a second. A file which has been deleted is left alone, rather than
+ * recreated with the defaults.
+ */
+public final class ConfigWatcher implements Runnable
+{
+    /**
+     * The longest time between checks of the file.
+     */
+    public static final long CHECK_INTERVAL_MILLIS = 1000;
+    
+    /**
+     * How long to wait after being told of a change before reading the file,
+     * so that an editor which saves in several writes has finished.
+     */
+    private static final long SETTLE_MILLIS = 100;
+    
+    private final File                        file;
+    private final List<ConfigurationListener> listeners = new CopyOnWriteArrayList<>();
+    
+    private volatile Configuration configuration;
+    private volatile boolean       isWatching;
+    
+    private long lastModified;
+    private long length;
+    
+    /**
+     * Reads the settings as they are now. Changes are looked for once
+     * <code>start</code> is called.
+     */
+    public ConfigWatcher()
+    {
+        this.file          = new File (Utils.CONFIG_FILE_PATH).getAbsoluteFile();
+        this.configuration = Configuration.read();
+        this.lastModified  = file.lastModified();
+        this.length        = file.length();
+    }
+    
+    /**
+     * Starts watching on a daemon thread.
+     */
+    public void start()
+    {
+        isWatching = true;
+        
+        Thread thread = new Thread (this, "ConfigWatcher");
+        thread.setDaemon (true);
+        thread.start();
+    }
+    
+    @Override
+    public void run()
+    {
+        WatchService service = null;
+        try
+        {
+            service = FileSystems.getDefault().newWatchService();
+            file.getParentFile().toPath().register (service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+        catch (IOException | UnsupportedOperationException failureReport)
+        {
+            System.out.println ("Cannot watch " + file.getName() + " for changes (" + failureReport + "). Checking it every " + CHECK_INTERVAL_MILLIS + " ms instead.");
+            service = null;
+        }
+        
+        try
+        {
+            while (isWatching)
+            {
+                boolean isTouched = false;
+                
+                if (service == null)
+                {
+                    Thread.sleep (CHECK_INTERVAL_MILLIS);
+                }
+                else
+                {
+                    WatchKey key = service.poll (CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (key != null)
+                    {
+                        isTouched = isAboutFile (key);
+                        key.reset();
+                    }
+                }
+                
+                if (isTouched)
+                {
+                    Thread.sleep (SETTLE_MILLIS);
+                }
+                
+                checkForChanges (isTouched);
+            }
+        }
+        catch (InterruptedException interruption)
+        {
+            // Stop watching.
+        }
+        finally
+        {
+            if (service != null)
+            {
+                try
+                {
+                    service.close();
+                }
+                catch (IOException failureReport)
+                {
+                    // Nothing left to do with it.
+                }
+            }
+        }
+    }
+    
+    /**
+     * Stops the watcher at its next check.
+     */
+    public void stopWatching()
+    {
+        isWatching = false;
+    }
+    
+    /**
+     * @return Whether or not any of the key's events are about the configuration file.
+     */
+    private boolean isAboutFile (WatchKey key)
+    {
+        boolean isAboutFile = false;
+        for (WatchEvent<?> event : key.pollEvents())
+        {
+            Object context = event.context();
+            if (context instanceof Path && ((Path) context).getFileName().toString().equals (file.getName()))
+            {
+                isAboutFile = true;
+            }
+        }
+        
+        return isAboutFile;
+    }
+    
+    /**
+     * Reads the file again if it may have changed, and reports the new
+     * settings if they differ from the last ones.
+     *
+     * @param isTouched Whether or not the watch service said that the file was written.
+     */
+    private void checkForChanges (boolean isTouched)
+    {
+        if (!file.isFile())
+        {
+            return;
+        }
+        
+        long modified = file.lastModified();
+        long size     = file.length();
+        
+        if (!isTouched && modified == lastModified && size == length)
+        {
+            return;
+        }
+        
+        lastModified = modified;
+        length       = size;
+        
+        Configuration previous = configuration;
+        Configuration current  = Configuration.read();
+        
+        if (current.equals (previous))
+        {
+            return;
+        }
+        
+        configuration = current;
+        System.out.println ("Applying the changed " + file.getName() + ": " + current + ".");
+        
+        for (ConfigurationListener listener : listeners)
+        {
+            listener.onConfigurationChanged (previous, current);
+        }
+    }
+    
+    /**
+     * @param listener Informed of every change to the settings.
+     */
+    public void addListener (ConfigurationListener listener)
+    {
+        listeners.add (listener);
+    }
+    
+    /**
+     * @return The settings as they were last read.
+     */
+    public Configuration getConfiguration()
+    {
+        return configuration;
+    }
+}
@@ -0,0 +1,82 @@
+package krist.miner;
+
+import java.util.Objects;
+
+/**
+ * The settings from the configuration file which can be changed while the
+ * miner is running, read at one moment. @see <code>ConfigWatcher</code>.
+ */
+public final class Configuration
+{
+    private final int    coreLimit;
+    private final String hashEngine;
+    private final int    batchSize;
+    private final long   pollInterval;
+    
+    /**
+     * @param coreLimit The number of miner threads.
+     * @param hashEngine The name of the hash engine, @see <code>HashEngines.select</code>.
+     * @param batchSize The number of nonces hashed between checks for new work.
+     * @param pollInterval The milliseconds between polls for a new block.
+     */
+    public Configuration (int coreLimit, String hashEngine, int batchSize, long pollInterval)
+    {
+        this.coreLimit    = coreLimit;
+        this.hashEngine   = hashEngine;
+        this.batchSize    = batchSize;
+        this.pollInterval = pollInterval;
+    }
+    
+    /**
+     * @return The settings in the configuration file right now, with the defaults for any which are missing.
+     */
+    public static Configuration read()
+    {
+        return new Configuration (Utils.getConfiguredCoreLimit(), Utils.getConfiguredHashEngine(), Utils.getConfiguredBatchSize(), Utils.getConfiguredPollInterval());
+    }
+    
+    public int getCoreLimit()
+    {
+        return coreLimit;
+    }
+    
+    public String getHashEngine()
+    {
+        return hashEngine;
+    }
+    
+    public int getBatchSize()
+    {
+        return batchSize;
+    }
+    
+    public long getPollInterval()
+    {
+        return pollInterval;
+    }
+    
+    @Override
+    public boolean equals (Object other)
+    {
+        if (!(other instanceof Configuration))
+        {
+            return false;
+        }
+        
+        Configuration configuration = (Configuration) other;
+        return coreLimit == configuration.coreLimit && hashEngine.equals (configuration.hashEngine)
+            && batchSize == configuration.batchSize && pollInterval == configuration.pollInterval;
+    }
+    
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash (coreLimit, hashEngine, batchSize, pollInterval);
+    }
+    
+    @Override
+    public String toString()
+    {
+        return "coreLimit=" + coreLimit + ", hashEngine=" + hashEngine + ", batchSize=" + batchSize + ", pollInterval=" + pollInterval;
+    }
+}
@@ -0,0 +1,19 @@
+package krist.miner;
+
+/**
+ * Informed by a <code>ConfigWatcher</code> whenever the configuration file
+ * is changed while the miner is running.
+ */
+public interface ConfigurationListener
+{
+    /**
+     * Executed on the watcher's thread with the settings before and after the
+     * change. Only the settings which differ between the two should be
+     * applied, so that anything chosen on the command line is kept until the
+     * user changes that setting in the file.
+     *
+     * @param previous The settings before the change.
+     * @param current The settings now in the file.
+     */
+    public void onConfigurationChanged (Configuration previous, Configuration current);
+}
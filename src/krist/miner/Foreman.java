@@ -1,35 +1,41 @@
 package krist.miner;
 
-import gui.ManagerGUI;
-import java.util.ArrayList;
-
 public class Foreman implements Runnable
 {
-    private final ManagerGUI gui;
-    private final ArrayList<ClusterMiner> miners;
+    /**
+     * The window of the hash rate reported to the engine's listeners, in seconds.
+     */
+    public static final int REPORTED_WINDOW_SECONDS = 10;
+    
+    private final PoolMiningEngine engine;
+    private final MinerPool        pool;
+    private final HashRateMeter    meter;
     
-    private int secondsElapsed;
     private volatile boolean isMining;
     
-    public Foreman (ManagerGUI gui, ArrayList<ClusterMiner> miners)
+    public Foreman (PoolMiningEngine engine, MinerPool pool, HashRateMeter meter)
     {
-        this.gui    = gui;
-        this.miners = miners;
+        this.engine = engine;
+        this.pool   = pool;
+        this.meter  = meter;
         
-        this.secondsElapsed = 0;
-        this.isMining       = true;
+        this.isMining = true;
     }
     
     @Override
     /**
-     * Computes the hash rate of all of the miners contained within
-     * <code>this.miners</code>, updating the ManagerGUI's hash rate
-     * field.
+     * Samples the hash counts of all of the miners in <code>this.pool</code>,
+     * including any added or retired along the way, into <code>this.meter</code>,
+     * and reports the hash rate over the last <code>REPORTED_WINDOW_SECONDS</code>
+     * to the engine.
      * 
-     * The calculation is performed approximately every 1 second.
+     * The sampling is performed approximately every 1 second.
      */
     public void run()
     {
+        meter.clear();
+        meter.sample (pool);
+        
         while (isMining)
         {
             try
@@ -43,18 +49,18 @@ public class Foreman implements Runnable
             {
                 System.out.println ("Foreman failed to sleep.");
             }
-            secondsElapsed++;
             
-            long speed = 0;
-            for (ClusterMiner miner : miners)
+            if (!isMining)
             {
-                speed += miner.getChangeInNonce() / secondsElapsed;
+                break;
             }
             
-            gui.updateSpeedField (speed);
+            meter.sample (pool);
+            engine.updateHashRate (Math.round (meter.getRate (REPORTED_WINDOW_SECONDS)));
         }
         
-        gui.updateSpeedField (0);
+        meter.clear();
+        engine.updateHashRate (0);
     }
     
     /**
@@ -62,10 +68,13 @@ public class Foreman implements Runnable
      * 
      * This is necessary because the foreman will synchronize on itself
      * in its <code>run</code> method, so it may not be checking if the
-     * ManagerGUI has stopped before starting to mine at new offsets.
+     * engine has stopped before starting to mine at new offsets. It is
+     * woken, so that it leaves at once; the engine waits for its thread to
+     * end before mining can start again, as the next foreman shares the meter.
      */
     public synchronized void stopMining()
     {
         isMining = false;
+        notifyAll();
     }
 }
@@ -0,0 +1,31 @@
+package krist.miner;
+
+/**
+ * A way of hashing nonces, discovered at startup through
+ * <code>java.util.ServiceLoader</code> (@see <code>META-INF/services/krist.miner.HashEngine</code>).
+ *
+ * Engines themselves are stateless. Every mining thread asks the chosen
+ * engine for its own <code>BatchHasher</code> for the block it is mining.
+ * @see <code>HashEngines</code> for how the engine is chosen.
+ */
+public interface HashEngine
+{
+    /**
+     * @return Short name of the engine, as used for the <code>hashEngine</code> field in the configuration file.
+     */
+    public String getName();
+    
+    /**
+     * @return Whether or not this engine can run on the current JVM and machine.
+     */
+    public boolean isSupported();
+    
+    /**
+     * Creates the per-thread hashing state for the given prefix.
+     * 
+     * @param midstate The prefix being mined.
+     * @param batchSize The most nonces that will be asked for in one call to <code>findBelow</code>.
+     * @return A hasher for the calling thread alone.
+     */
+    public BatchHasher newBatchHasher (Midstate midstate, int batchSize);
+}
@@ -0,0 +1,311 @@
+package krist.miner;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Finds the available <code>HashEngine</code> implementations and picks the
+ * one to mine with.
+ *
+ * Unless the configuration file names an engine (the <code>hashEngine</code>
+ * field), every supported engine is run for a moment on a dummy block and the
+ * fastest one on this machine wins. That calibration runs once per process,
+ * within <code>CALIBRATION_BUDGET_MILLIS</code>, and its result is reused.
+ */
+public final class HashEngines
+{
+    /**
+     * The value of the <code>hashEngine</code> field meaning "measure and pick".
+     */
+    public static final String AUTOMATIC = "auto";
+    
+    /**
+     * How long each calibration window lasts.
+     */
+    private static final long CALIBRATION_MILLIS = 200;
+    
+    /**
+     * The most windows an engine is measured for before its best is taken.
+     */
+    private static final int CALIBRATION_WINDOWS = 10;
+    
+    /**
+     * How long calibrating every engine may take in all, shared out evenly
+     * between them. Each engine gets at least one window.
+     */
+    private static final long CALIBRATION_BUDGET_MILLIS = 2000;
+    
+    /**
+     * The number of nonces per <code>findBelow</code> call during calibration.
+     */
+    private static final int CALIBRATION_BATCH = 4096;
+    
+    /**
+     * The result of the automatic calibration, once it has run.
+     */
+    private static Choice calibrated = null;
+    
+    private HashEngines()
+    {
+    }
+    
+    /**
+     * An engine, together with the hash rate it managed during calibration.
+     */
+    public static final class Choice
+    {
+        private final HashEngine engine;
+        private final long       hashRate;
+        
+        Choice (HashEngine engine, long hashRate)
+        {
+            this.engine   = engine;
+            this.hashRate = hashRate;
+        }
+        
+        public HashEngine getEngine()
+        {
+            return engine;
+        }
+        
+        /**
+         * @return Single thread hashes per second measured for the engine, or
+         *         0 if it was configured and so never measured.
+         */
+        public long getHashRate()
+        {
+            return hashRate;
+        }
+        
+        @Override
+        public String toString()
+        {
+            return hashRate == 0 ? engine.getName() : engine.getName() + " (" + hashRate + " H/s per thread)";
+        }
+    }
+    
+    /**
+     * Loads every engine registered with <code>ServiceLoader</code> which is
+     * supported here. Engines which fail to load are skipped.
+     *
+     * @return The supported engines. Never empty: the Java engine is always there.
+     */
+    public static ArrayList<HashEngine> discover()
+    {
+        ArrayList<HashEngine> engines = new ArrayList<>();
+        Iterator<HashEngine>  loader  = ServiceLoader.load (HashEngine.class).iterator();
+        
+        while (true)
+        {
+            try
+            {
+                if (!loader.hasNext())
+                {
+                    break;
+                }
+                
+                HashEngine engine = loader.next();
+                if (engine.isSupported())
+                {
+                    engines.add (engine);
+                }
+                else
+                {
+                    System.out.println ("Hash engine '" + engine.getName() + "' is not supported here.");
+                }
+            }
+            catch (ServiceConfigurationError | LinkageError loadFailure)
+            {
+                System.out.println ("Failed to load a hash engine: " + loadFailure.getMessage());
+            }
+        }
+        
+        if (engines.isEmpty())
+        {
+            engines.add (new JavaHashEngine());
+        }
+        
+        return engines;
+    }
+    
+    /**
+     * Picks the engine to mine with. A configured engine is used as it is;
+     * otherwise the engines are calibrated, the first time only.
+     *
+     * @param preferred The configured engine name, or <code>AUTOMATIC</code> (or null) to pick the fastest.
+     * @return The chosen engine and its measured hash rate.
+     */
+    public static Choice select (String preferred)
+    {
+        Choice configured = findConfigured (preferred);
+        return configured != null ? configured : calibrate();
+    }
+    
+    /**
+     * Picks the engine to mine with, for a configuration change while the
+     * miners are running: they would take the calibration's threads and skew
+     * it, so if the engines have not been calibrated yet they are not now.
+     *
+     * @param preferred The configured engine name, or <code>AUTOMATIC</code> (or null) to pick the fastest.
+     * @return The chosen engine, or null to keep the current one.
+     */
+    public static Choice selectWithoutCalibrating (String preferred)
+    {
+        Choice configured = findConfigured (preferred);
+        if (configured != null)
+        {
+            return configured;
+        }
+        
+        synchronized (HashEngines.class)
+        {
+            if (calibrated == null)
+            {
+                System.out.println ("Not calibrating the hash engines while mining. Keeping the current one until the miner restarts.");
+            }
+            
+            return calibrated;
+        }
+    }
+    
+    /**
+     * @return The configured engine, unmeasured, or null if the engine is
+     *         automatic or the configured one is unavailable.
+     */
+    private static Choice findConfigured (String preferred)
+    {
+        if (preferred == null || preferred.equals (AUTOMATIC))
+        {
+            return null;
+        }
+        
+        for (HashEngine engine : discover())
+        {
+            if (engine.getName().equals (preferred))
+            {
+                Choice choice = new Choice (engine, 0);
+                System.out.println ("Using configured hash engine: " + choice + ".");
+                
+                return choice;
+            }
+        }
+        
+        System.out.println ("Configured hash engine '" + preferred + "' is unavailable. Choosing automatically.");
+        return null;
+    }
+    
+    /**
+     * Measures every engine, sharing <code>CALIBRATION_BUDGET_MILLIS</code>
+     * between them, and picks the fastest. Runs once; later calls return the
+     * same choice.
+     */
+    private static synchronized Choice calibrate()
+    {
+        if (calibrated != null)
+        {
+            System.out.println ("Using hash engine: " + calibrated + ".");
+            return calibrated;
+        }
+        
+        ArrayList<HashEngine> engines  = discover();
+        long                  deadline = System.nanoTime() + CALIBRATION_BUDGET_MILLIS * 1000000;
+        
+        Choice best = null;
+        for (int index = 0; index < engines.size(); index++)
+        {
+            long       remaining = (deadline - System.nanoTime()) / 1000000;
+            HashEngine engine    = engines.get (index);
+            Choice     candidate = new Choice (engine, measure (engine, remaining / (engines.size() - index)));
+            System.out.println ("Calibrated hash engine: " + candidate + ".");
+            
+            if (best == null || candidate.getHashRate() > best.getHashRate())
+            {
+                best = candidate;
+            }
+        }
+        
+        System.out.println ("Using hash engine: " + best + ".");
+        
+        calibrated = best;
+        return best;
+    }
+    
+    /**
+     * Hashes batches against a target of 1 for the given time.
+     * 
+     * @return The number of nonces hashed.
+     */
+    private static long runFor (BatchHasher hasher, long nonce, long millis)
+    {
+        long hashes   = 0;
+        long deadline = System.nanoTime() + millis * 1000000;
+        
+        do
+        {
+            hasher.findBelow (nonce + hashes, CALIBRATION_BATCH, 1);
+            hashes += CALIBRATION_BATCH;
+        }
+        while (System.nanoTime() < deadline);
+        
+        return hashes;
+    }
+    
+    /**
+     * Runs the engine on a single thread, in windows of
+     * <code>CALIBRATION_MILLIS</code>, against a target of 1, which in
+     * practice is never met (and a non-positive target would let the engines
+     * skip hashing altogether).
+     *
+     * @param engine The engine to measure.
+     * @param budgetMillis How long the measurement may take. At least one window runs regardless.
+     * @return Hashes per second, or 0 if the engine failed.
+     */
+    public static long measure (HashEngine engine, long budgetMillis)
+    {
+        Midstate midstate = new Midstate ("kcalibrate", "000000000000");
+        long     nonce    = midstate.getLayout().getFirstNonce();
+        
+        try (BatchHasher hasher = engine.newBatchHasher (midstate, CALIBRATION_BATCH))
+        {
+            /**
+             * Keep measuring windows for as long as the rate keeps climbing
+             * by more than 5%, so that the JIT has compiled the engine before
+             * it is judged. Interpreted vector code in particular is slower
+             * than scalar code by far and takes the longest to warm up.
+             */
+            long bestRate = 0;
+            long deadline = System.nanoTime() + budgetMillis * 1000000;
+            
+            for (int window = 0; window < CALIBRATION_WINDOWS; window++)
+            {
+                if (window > 0 && System.nanoTime() + CALIBRATION_MILLIS * 1000000 > deadline)
+                {
+                    break;
+                }
+                
+                long start  = System.nanoTime();
+                long hashes = runFor (hasher, nonce, CALIBRATION_MILLIS);
+                long rate   = hashes * 1000000000L / (System.nanoTime() - start);
+                
+                nonce += hashes;
+                
+                if (rate < bestRate + bestRate / 20)
+                {
+                    return Math.max (rate, bestRate);
+                }
+                
+                bestRate = rate;
+            }
+            
+            return bestRate;
+        }
+        catch (RuntimeException | LinkageError engineFailure)
+        {
+            System.out.println ("Hash engine '" + engine.getName() + "' failed calibration: " + engineFailure.getMessage());
+        }
+        
+        return 0;
+    }
+}
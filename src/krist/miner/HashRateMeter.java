@@ -0,0 +1,83 @@
+package krist.miner;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The hash rate of a <code>MinerPool</code>, as a whole and miner by miner,
+ * over each of the <code>WINDOWS_SECONDS</code>. The <code>Foreman</code>
+ * samples the pool into it every second.
+ *
+ * Every miner has its own <code>RateWindow</code>, which goes when the miner
+ * is retired. The pool's window counts the hashes of retired miners too, so
+ * its rate does not dip when the thread count changes.
+ */
+public final class HashRateMeter
+{
+    /**
+     * The windows the rates are kept over, in seconds.
+     */
+    public static final int[] WINDOWS_SECONDS = { 1, 10, 60 };
+    
+    private final RateWindow                    total   = new RateWindow();
+    private final Map<ClusterMiner, RateWindow> workers = new LinkedHashMap<>();
+    
+    /**
+     * Reads the hash counts of the pool and of each of its miners.
+     *
+     * @param pool The pool to sample.
+     */
+    public synchronized void sample (MinerPool pool)
+    {
+        long now = System.nanoTime();
+        total.sample (pool.getHashes(), now);
+        
+        Map<ClusterMiner, RateWindow> current = new LinkedHashMap<>();
+        for (ClusterMiner miner : pool.getMiners())
+        {
+            RateWindow window = workers.get (miner);
+            if (window == null)
+            {
+                window = new RateWindow();
+            }
+            
+            window.sample (miner.getChangeInNonce(), now);
+            current.put (miner, window);
+        }
+        
+        workers.clear();
+        workers.putAll (current);
+    }
+    
+    /**
+     * @param seconds The window, from 1 to <code>RateWindow.MAX_WINDOW_SECONDS</code>.
+     * @return Hashes per second across the pool over the window.
+     */
+    public double getRate (int seconds)
+    {
+        return total.getRate (seconds);
+    }
+    
+    /**
+     * @return The window of each miner in the pool at the last sample, by the name of its thread.
+     */
+    public synchronized Map<String, RateWindow> getWorkers()
+    {
+        Map<String, RateWindow> byName = new LinkedHashMap<>();
+        for (Map.Entry<ClusterMiner, RateWindow> worker : workers.entrySet())
+        {
+            byName.put (worker.getKey().getName(), worker.getValue());
+        }
+        
+        return byName;
+    }
+    
+    /**
+     * Forgets every sample, so that the rates start afresh.
+     */
+    public synchronized void clear()
+    {
+        total.clear();
+        workers.clear();
+    }
+}
@@ -0,0 +1,176 @@
+package krist.miner;
+
+/**
+ * Runs the miner from the command line, without a window, for machines with
+ * no display:
+ *
+ * <code>java -jar Krist_Miner.jar --headless &lt;address&gt; [threads] [engine]</code>
+ *
+ * The thread count defaults to the configured core limit and the engine to
+ * the configured hash engine (@see <code>Utils.getConfiguredHashEngine</code>).
+ * The hash rate is logged every <code>LOG_INTERVAL_MILLIS</code> until the
+ * process is killed.
+ *
+ * Changes to the configuration file apply while mining, @see
+ * <code>ConfigWatcher</code>: a new core limit becomes the thread count, even
+ * if one was given on the command line.
+ */
+public final class HeadlessMiner implements MiningEngineListener, ConfigurationListener
+{
+    /**
+     * The command line flag which selects this entry point.
+     */
+    public static final String FLAG = "--headless";
+    
+    /**
+     * How often the miner's statistics are logged.
+     */
+    private static final long LOG_INTERVAL_MILLIS = 10000;
+    
+    private final MiningEngine engine;
+    
+    private HeadlessMiner (MiningEngine engine)
+    {
+        this.engine = engine;
+    }
+    
+    /**
+     * @param args The address to mine for, then optionally the thread count and the hash engine name.
+     *             A leading <code>FLAG</code> is skipped.
+     */
+    public static void main (String[] args)
+    {
+        // Find the krist node while the arguments are read and the engines calibrate.
+        SyncNode.resolveInBackground();
+        
+        int first = args.length > 0 && args[0].equals (FLAG) ? 1 : 0;
+        
+        if (args.length - first < 1 || args.length - first > 3)
+        {
+            System.out.println ("Usage: " + FLAG + " <address> [threads] [engine]");
+            System.exit (2);
+        }
+        
+        ConfigWatcher configWatcher = new ConfigWatcher();
+        Configuration configuration = configWatcher.getConfiguration();
+        
+        String minerID    = args[first];
+        int    threads    = configuration.getCoreLimit();
+        String engineName = configuration.getHashEngine();
+        
+        if (args.length - first > 1)
+        {
+            try
+            {
+                threads = Integer.parseInt (args[first + 1]);
+            }
+            catch (NumberFormatException conversionFailureReport)
+            {
+                threads = 0;
+            }
+            
+            if (threads < 1)
+            {
+                System.out.println ("Thread count must be a positive integer, not '" + args[first + 1] + "'.");
+                System.exit (2);
+            }
+        }
+        
+        if (args.length - first > 2)
+        {
+            engineName = args[first + 2];
+        }
+        
+        // Without the node there is no telling, so mine anyway: the work
+        // will be fetched once it is back.
+        if (!Utils.isMinerValid (minerID))
+        {
+            if (Utils.isNodeReachable())
+            {
+                System.out.println ("'" + minerID + "' is not a valid krist address.");
+                System.exit (1);
+            }
+            
+            System.out.println ("Could not reach the krist node to check '" + minerID + "'. Mining anyway.");
+        }
+        
+        final PoolMiningEngine engine = PoolMiningEngine.create (HashEngines.select (engineName).getEngine());
+        engine.setBatchSize (configuration.getBatchSize());
+        engine.setPollInterval (configuration.getPollInterval());
+        engine.setMinerCount (threads);
+        
+        HeadlessMiner miner = new HeadlessMiner (engine);
+        engine.addListener (miner);
+        configWatcher.addListener (miner);
+        configWatcher.start();
+        
+        MetricsServer.startConfigured (engine);
+        
+        Runtime.getRuntime().addShutdownHook (new Thread (engine::stop, "Shutdown"));
+        
+        System.out.println ("Mining for " + minerID + " on " + threads + " thread(s).");
+        engine.start (minerID, 0);
+        
+        while (true)
+        {
+            try
+            {
+                Thread.sleep (LOG_INTERVAL_MILLIS);
+            }
+            catch (InterruptedException sleepFailure)
+            {
+                return;
+            }
+            
+            System.out.println (engine.getStats());
+            System.out.println (SyncNode.describeNodes());
+        }
+    }
+    
+    @Override
+    public void onWorkChanged (String block, long target)
+    {
+        System.out.println ("New work: block " + block + ", target " + target + ".");
+    }
+    
+    @Override
+    public void onBlockMined (String block, long nonce, int blocksMined)
+    {
+        System.out.println ("Mined block " + block + " with nonce " + nonce + " (" + blocksMined + " so far).");
+    }
+    
+    @Override
+    public void onHashRate (long hashesPerSecond)
+    {
+        // Logged on a timer instead, so as not to flood the console.
+    }
+    
+    @Override
+    public void onConfigurationChanged (Configuration previous, Configuration current)
+    {
+        if (current.getCoreLimit() != previous.getCoreLimit())
+        {
+            engine.setMinerCount (current.getCoreLimit());
+        }
+        
+        if (current.getBatchSize() != previous.getBatchSize())
+        {
+            engine.setBatchSize (current.getBatchSize());
+        }
+        
+        if (current.getPollInterval() != previous.getPollInterval())
+        {
+            engine.setPollInterval (current.getPollInterval());
+        }
+        
+        // The miners are running, so an automatic engine reuses the startup calibration, if there was one.
+        if (!current.getHashEngine().equals (previous.getHashEngine()))
+        {
+            HashEngines.Choice choice = HashEngines.selectWithoutCalibrating (current.getHashEngine());
+            if (choice != null)
+            {
+                engine.setHashEngine (choice.getEngine());
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package krist.miner;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One HTTP request through <code>HttpTransport</code>, from sending it to
+ * having the whole body or giving up.
+ */
+@Name ("krist.miner.HttpCall")
+@Label ("HTTP Call")
+@Category ({ "Krist Miner", "Network" })
+@Description ("One request to a krist node or the static API.")
+@StackTrace (false)
+final class HttpCallEvent extends Event
+{
+    @Label ("Host")
+    String host;
+    
+    @Label ("Endpoint")
+    @Description ("The krist query, such as lastblock or getwork, without its parameters.")
+    String endpoint;
+    
+    @Label ("Status")
+    @Description ("The HTTP status, or 0 if there was no answer.")
+    int status;
+    
+    @Label ("Outcome")
+    @Description ("ok, the error status, or why the request failed.")
+    String outcome;
+    
+    @Label ("Asynchronous")
+    boolean isAsync;
+    
+    /**
+     * Starts the clock, and fills in the host and endpoint from the URL.
+     */
+    void begin (String url, boolean isAsync)
+    {
+        begin();
+        
+        // Picking the URL apart is only worth it if the event will be recorded.
+        if (!isEnabled())
+        {
+            return;
+        }
+        
+        this.isAsync = isAsync;
+        
+        int hostStart = url.indexOf ("://");
+        hostStart     = hostStart < 0 ? 0 : hostStart + 3;
+        int hostEnd   = endOf (url, hostStart, '/', '?');
+        host          = url.substring (hostStart, hostEnd);
+        
+        // A krist query names the endpoint, and anything else is a page on the static API.
+        int queryStart = url.indexOf ('?', hostEnd);
+        if (queryStart < 0)
+        {
+            endpoint = hostEnd == url.length() ? "/" : url.substring (hostEnd);
+        }
+        else
+        {
+            endpoint = url.substring (queryStart + 1, endOf (url, queryStart + 1, '&', '='));
+        }
+    }
+    
+    /**
+     * @return The index of the first of either character in the text from <code>start</code>, or its length if there is none.
+     */
+    private static int endOf (String text, int start, char first, char second)
+    {
+        int end = start;
+        while (end < text.length() && text.charAt (end) != first && text.charAt (end) != second)
+        {
+            end++;
+        }
+        
+        return end;
+    }
+    
+    /**
+     * Stops the clock and records the event, if it is enabled.
+     */
+    void end (int status, String outcome)
+    {
+        this.status  = status;
+        this.outcome = outcome;
+        
+        commit();
+    }
+}
@@ -0,0 +1,269 @@
+package krist.miner;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * The one HTTP client every call to a krist node goes through.
+ *
+ * A single <code>java.net.http.HttpClient</code> is shared by the whole
+ * program, so connections to the node are kept alive and reused instead of
+ * being opened, and leaked, for every request. Every request has a timeout,
+ * chosen per endpoint by the caller from the constants below, and bodies are
+ * read whole into a string: krist's answers are a line or two at most.
+ */
+public final class HttpTransport
+{
+    /**
+     * How long to wait for a connection to the node.
+     */
+    public static final Duration CONNECT_TIMEOUT = Duration.ofSeconds (5);
+    
+    /**
+     * Timeouts for whole requests, by endpoint. Work lookups are on the
+     * mining path and should fail fast; a slow submission is better than a
+     * lost block.
+     */
+    public static final Duration WORK_TIMEOUT        = Duration.ofSeconds (5);
+    public static final Duration BALANCE_TIMEOUT     = Duration.ofSeconds (10);
+    public static final Duration SUBMIT_TIMEOUT      = Duration.ofSeconds (15);
+    public static final Duration TRANSACTION_TIMEOUT = Duration.ofSeconds (20);
+    public static final Duration STATIC_API_TIMEOUT  = Duration.ofSeconds (10);
+    
+    private static final HttpClient CLIENT = HttpClient.newBuilder()
+                                                       .version (HttpClient.Version.HTTP_1_1)
+                                                       .connectTimeout (CONNECT_TIMEOUT)
+                                                       .followRedirects (HttpClient.Redirect.NORMAL)
+                                                       .build();
+    
+    private HttpTransport()
+    {
+    }
+    
+    /**
+     * Fetches the page at <code>url</code>, waiting for it.
+     * 
+     * @param url The page to fetch, or null if there is nowhere to fetch it from.
+     * @param timeout How long the whole request may take.
+     * @return The body of the page. Null if the request failed, timed out or was answered with an error status.
+     */
+    public static String get (String url, Duration timeout)
+    {
+        return bodyOf (send (url, timeout));
+    }
+    
+    /**
+     * Fetches the page at <code>url</code>, waiting for it, and hands back the
+     * whole answer, so that an error status can be told apart from a node
+     * which did not answer at all.
+     * 
+     * @param url The page to fetch, or null if there is nowhere to fetch it from.
+     * @param timeout How long the whole request may take.
+     * @return The answer, whatever its status. Null if the request failed or timed out.
+     */
+    public static HttpResponse<String> send (String url, Duration timeout)
+    {
+        if (url == null)
+        {
+            return null;
+        }
+        
+        HttpCallEvent event = new HttpCallEvent();
+        event.begin (url, false);
+        
+        try
+        {
+            HttpResponse<String> response = CLIENT.send (newRequest (url, timeout), HttpResponse.BodyHandlers.ofString());
+            event.end (response.statusCode(), outcomeOf (response));
+            
+            return response;
+        }
+        catch (IOException | IllegalArgumentException requestFailure)
+        {
+            event.end (0, requestFailure.toString());
+            System.out.println ("Request to " + url + " failed: " + requestFailure);
+        }
+        catch (InterruptedException interruption)
+        {
+            event.end (0, "interrupted");
+            Thread.currentThread().interrupt();
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Fetches the page at <code>url</code> without waiting for it.
+     * 
+     * @param url The page to fetch, or null if there is nowhere to fetch it from.
+     * @param timeout How long the whole request may take.
+     * @return The body of the page, to come. It completes exceptionally if the
+     *         request fails, times out or is answered with an error status.
+     */
+    public static CompletableFuture<String> getAsync (String url, Duration timeout)
+    {
+        return sendAsync (url, timeout).thenApply (HttpTransport::requireBody);
+    }
+    
+    /**
+     * Fetches the page at <code>url</code> without waiting for it, @see <code>send</code>.
+     * 
+     * @param url The page to fetch, or null if there is nowhere to fetch it from.
+     * @param timeout How long the whole request may take.
+     * @return The answer, whatever its status, to come. It completes
+     *         exceptionally only if the request fails or times out.
+     */
+    public static CompletableFuture<HttpResponse<String>> sendAsync (String url, Duration timeout)
+    {
+        if (url == null)
+        {
+            return CompletableFuture.failedFuture (new IllegalStateException ("Nowhere to send the request."));
+        }
+        
+        HttpCallEvent event = new HttpCallEvent();
+        event.begin (url, true);
+        
+        try
+        {
+            return CLIENT.sendAsync (newRequest (url, timeout), HttpResponse.BodyHandlers.ofString()).whenComplete ((response, requestFailure) ->
+            {
+                if (response != null)
+                {
+                    event.end (response.statusCode(), outcomeOf (response));
+                }
+                else
+                {
+                    event.end (0, String.valueOf (requestFailure instanceof CompletionException ? requestFailure.getCause() : requestFailure));
+                }
+            });
+        }
+        catch (IllegalArgumentException malformedURL)
+        {
+            event.end (0, malformedURL.toString());
+            return CompletableFuture.failedFuture (malformedURL);
+        }
+    }
+    
+    /**
+     * @param response An answer, or null if there was none.
+     * @return The answer's body, or null if there was no answer or it has an
+     *         error status, as <code>URL.openStream</code> would have thrown for one.
+     */
+    public static String bodyOf (HttpResponse<String> response)
+    {
+        return response == null || response.statusCode() >= 400 ? null : response.body();
+    }
+    
+    /**
+     * @param response An answer.
+     * @return The answer's body.
+     * @throws IllegalStateException If the answer has an error status.
+     */
+    public static String requireBody (HttpResponse<String> response)
+    {
+        String body = bodyOf (response);
+        if (body == null)
+        {
+            throw new IllegalStateException ("HTTP " + response.statusCode() + " from " + response.uri());
+        }
+        
+        return body;
+    }
+    
+    /**
+     * Reads the decimal number at the start of a body, such as the answer to
+     * <code>getwork</code>, straight from its characters.
+     * 
+     * @param body The body to read.
+     * @return The number the body starts with.
+     * @throws NumberFormatException If the body is null or does not start with a number.
+     */
+    public static long parseLong (String body)
+    {
+        if (body == null)
+        {
+            throw new NumberFormatException ("No body.");
+        }
+        
+        int     index    = 0;
+        int     length   = body.length();
+        boolean negative = length > 0 && body.charAt (0) == '-';
+        long    value    = 0;
+        
+        if (negative)
+        {
+            index++;
+        }
+        
+        // Digits are subtracted, so that Long.MIN_VALUE can be read too.
+        int firstDigit = index;
+        try
+        {
+            for (; index < length; index++)
+            {
+                char character = body.charAt (index);
+                if (character < '0' || character > '9')
+                {
+                    break;
+                }
+                
+                value = Math.subtractExact (Math.multiplyExact (value, 10), character - '0');
+            }
+            
+            // Only trailing whitespace, such as the end of the line, may follow.
+            if (index > firstDigit && (index == length || Character.isWhitespace (body.charAt (index))))
+            {
+                return negative ? value : Math.negateExact (value);
+            }
+        }
+        catch (ArithmeticException overflow)
+        {
+        }
+        
+        throw new NumberFormatException ("Not a number: '" + firstLine (body) + "'.");
+    }
+    
+    /**
+     * @param body A body, or null.
+     * @return The body up to its first line break, or null if the body was null.
+     */
+    public static String firstLine (String body)
+    {
+        if (body == null)
+        {
+            return null;
+        }
+        
+        int end = body.indexOf ('\n');
+        if (end < 0)
+        {
+            end = body.length();
+        }
+        
+        if (end > 0 && body.charAt (end - 1) == '\r')
+        {
+            end--;
+        }
+        
+        return body.substring (0, end);
+    }
+    
+    private static HttpRequest newRequest (String url, Duration timeout)
+    {
+        return HttpRequest.newBuilder (URI.create (url)).timeout (timeout).GET().build();
+    }
+    
+    /**
+     * @return "ok", or the error status, for an <code>HttpCallEvent</code>.
+     */
+    private static String outcomeOf (HttpResponse<String> response)
+    {
+        return response.statusCode() >= 400 ? "HTTP " + response.statusCode() : "ok";
+    }
+}
@@ -0,0 +1,50 @@
+package krist.miner;
+
+/**
+ * The portable engine: the scalar, allocation-free <code>NonceHasher</code>.
+ * It is always supported, so it is what everything else falls back to.
+ */
+public final class JavaHashEngine implements HashEngine
+{
+    @Override
+    public String getName()
+    {
+        return "java";
+    }
+    
+    @Override
+    public boolean isSupported()
+    {
+        return true;
+    }
+    
+    @Override
+    public BatchHasher newBatchHasher (Midstate midstate, int batchSize)
+    {
+        final NonceHasher hasher = new NonceHasher (midstate);
+        
+        return new BatchHasher()
+        {
+            @Override
+            public long findBelow (long firstNonce, int count, long target)
+            {
+                hasher.seek (firstNonce);
+                
+                for (int index = 0; index < count; index++, hasher.increment())
+                {
+                    if (hasher.isBelow (target))
+                    {
+                        return firstNonce + index;
+                    }
+                }
+                
+                return -1;
+            }
+            
+            @Override
+            public void close()
+            {
+            }
+        };
+    }
+}
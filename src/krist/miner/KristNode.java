@@ -0,0 +1,128 @@
+package krist.miner;
+
+import java.util.Arrays;
+
+/**
+ * One krist node which queries can be sent to, and what is known about how
+ * well it answers.
+ *
+ * Every node has its own <code>CircuitBreaker</code>, so that a node which is
+ * down is skipped while the others are used. The latencies of the probes sent
+ * to it by <code>SyncNode</code> go into a <code>LatencyHistogram</code>, and
+ * the nodes are ranked by the median of the last few, which a single slow
+ * probe, such as the first one over a new connection, cannot throw off.
+ */
+public final class KristNode
+{
+    /**
+     * The number of probes the median is taken over.
+     */
+    private static final int RECENT_PROBES = 5;
+    
+    private final String           address;
+    private final CircuitBreaker   breaker;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    
+    private final long[] recentNanos = new long[RECENT_PROBES];
+    private int          probes;
+    
+    /**
+     * @param address The node's address, without the '?' that queries follow.
+     */
+    public KristNode (String address)
+    {
+        this.address = address;
+        this.breaker = new CircuitBreaker ("krist node " + address, 3, new Backoff (1000, 60000));
+    }
+    
+    public String getAddress()
+    {
+        return address;
+    }
+    
+    /**
+     * @return The node's address followed by '?', ready for a query.
+     */
+    public String getLink()
+    {
+        return address + "?";
+    }
+    
+    public CircuitBreaker getBreaker()
+    {
+        return breaker;
+    }
+    
+    /**
+     * @return The latencies of the probes the node has answered.
+     */
+    public LatencyHistogram getLatency()
+    {
+        return latency;
+    }
+    
+    /**
+     * @return Whether or not the last request to the node was answered.
+     */
+    public boolean isHealthy()
+    {
+        return breaker.getFailures() == 0;
+    }
+    
+    /**
+     * Reports the outcome of a request to the node, which must have been
+     * allowed by its breaker.
+     *
+     * @param isAnswered Whether or not the node answered.
+     */
+    public void recordOutcome (boolean isAnswered)
+    {
+        if (isAnswered)
+        {
+            breaker.recordSuccess();
+        }
+        else
+        {
+            breaker.recordFailure();
+        }
+    }
+    
+    /**
+     * @param nanos How long the node took to answer a probe.
+     */
+    public synchronized void recordProbe (long nanos)
+    {
+        latency.record (nanos);
+        recentNanos[probes++ % RECENT_PROBES] = nanos;
+    }
+    
+    /**
+     * @return The median latency of the last few probes in milliseconds, or
+     *         <code>Double.MAX_VALUE</code> if the node has not answered a probe yet.
+     */
+    public synchronized double getMedianMillis()
+    {
+        if (probes == 0)
+        {
+            return Double.MAX_VALUE;
+        }
+        
+        long[] recent = Arrays.copyOf (recentNanos, Math.min (probes, RECENT_PROBES));
+        Arrays.sort (recent);
+        
+        return recent[recent.length / 2] / 1e6;
+    }
+    
+    @Override
+    public synchronized String toString()
+    {
+        String health = breaker.isOpen() ? "down" : isHealthy() ? "healthy" : "failing";
+        
+        if (probes == 0)
+        {
+            return address + " (" + health + ", not probed yet)";
+        }
+        
+        return address + String.format (" (%s, median %.2f ms, ", health, getMedianMillis()) + latency + ")";
+    }
+}
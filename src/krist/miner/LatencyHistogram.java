@@ -0,0 +1,126 @@
+package krist.miner;
+
+/**
+ * Counts how long something took into fixed buckets, so that the spread can
+ * be seen and percentiles read off, rather than just the mean. The buckets
+ * are bounded by <code>BUCKET_BOUNDS_MILLIS</code>, and one more bucket takes
+ * everything beyond the last bound. Safe to record into and read from any
+ * thread.
+ */
+public final class LatencyHistogram
+{
+    /**
+     * The inclusive upper bound of each bucket, in milliseconds.
+     */
+    public static final double[] BUCKET_BOUNDS_MILLIS =
+    {
+        1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000
+    };
+    
+    private final long[] counts = new long[BUCKET_BOUNDS_MILLIS.length + 1];
+    private long         count;
+    private long         totalNanos;
+    
+    /**
+     * @param nanos How long it took this time, in nanoseconds.
+     */
+    public synchronized void record (long nanos)
+    {
+        double millis = nanos / 1e6;
+        int    bucket = 0;
+        
+        while (bucket < BUCKET_BOUNDS_MILLIS.length && millis > BUCKET_BOUNDS_MILLIS[bucket])
+        {
+            bucket++;
+        }
+        
+        counts[bucket]++;
+        count++;
+        totalNanos += nanos;
+    }
+    
+    public synchronized long getCount()
+    {
+        return count;
+    }
+    
+    /**
+     * @return The sum of every recording, in nanoseconds.
+     */
+    public synchronized long getTotalNanos()
+    {
+        return totalNanos;
+    }
+    
+    /**
+     * @return The count in each bucket, in the order of <code>BUCKET_BOUNDS_MILLIS</code>,
+     *         followed by the count beyond the last bound.
+     */
+    public synchronized long[] getCounts()
+    {
+        return counts.clone();
+    }
+    
+    /**
+     * @param percentile The percentile to read, from 0 to 100.
+     * @return The bound of the bucket the percentile falls in, in milliseconds.
+     *         Infinity if it is beyond the last bound, and 0 if nothing has been recorded.
+     */
+    public synchronized double getPercentileMillis (double percentile)
+    {
+        if (count == 0)
+        {
+            return 0;
+        }
+        
+        long rank = Math.max (1, (long) Math.ceil (count * percentile / 100));
+        long seen = 0;
+        
+        for (int bucket = 0; bucket < BUCKET_BOUNDS_MILLIS.length; bucket++)
+        {
+            seen += counts[bucket];
+            if (seen >= rank)
+            {
+                return BUCKET_BOUNDS_MILLIS[bucket];
+            }
+        }
+        
+        return Double.POSITIVE_INFINITY;
+    }
+    
+    @Override
+    public synchronized String toString()
+    {
+        StringBuilder buckets = new StringBuilder();
+        
+        for (int bucket = 0; bucket < counts.length; bucket++)
+        {
+            if (counts[bucket] == 0)
+            {
+                continue;
+            }
+            
+            if (buckets.length() > 0)
+            {
+                buckets.append (", ");
+            }
+            
+            buckets.append (bucket < BUCKET_BOUNDS_MILLIS.length ? "<= " + describe (BUCKET_BOUNDS_MILLIS[bucket]) : "> " + describe (BUCKET_BOUNDS_MILLIS[bucket - 1]))
+                   .append (": ").append (counts[bucket]);
+        }
+        
+        return "p50 " + describePercentile (50) + ", p90 " + describePercentile (90) + ", p99 " + describePercentile (99)
+             + " over " + count + " [" + buckets + "]";
+    }
+    
+    private String describePercentile (double percentile)
+    {
+        double bound = getPercentileMillis (percentile);
+        return Double.isInfinite (bound) ? "> " + describe (BUCKET_BOUNDS_MILLIS[BUCKET_BOUNDS_MILLIS.length - 1]) : "<= " + describe (bound);
+    }
+    
+    private static String describe (double millis)
+    {
+        return String.format ("%.0f ms", millis);
+    }
+}
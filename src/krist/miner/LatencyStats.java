@@ -0,0 +1,59 @@
+package krist.miner;
+
+/**
+ * A running summary of how long something took: how many times, the last
+ * time, the mean and the worst. Safe to record into and read from any thread.
+ */
+public final class LatencyStats
+{
+    private long count;
+    private long totalNanos;
+    private long lastNanos;
+    private long maxNanos;
+    
+    /**
+     * @param nanos How long it took this time, in nanoseconds.
+     */
+    public synchronized void record (long nanos)
+    {
+        count++;
+        totalNanos += nanos;
+        lastNanos   = nanos;
+        maxNanos    = Math.max (maxNanos, nanos);
+    }
+    
+    public synchronized long getCount()
+    {
+        return count;
+    }
+    
+    /**
+     * @return The latest recording in milliseconds, or 0 if there is none.
+     */
+    public synchronized double getLastMillis()
+    {
+        return lastNanos / 1e6;
+    }
+    
+    /**
+     * @return The mean of all recordings in milliseconds, or 0 if there are none.
+     */
+    public synchronized double getMeanMillis()
+    {
+        return count == 0 ? 0 : totalNanos / 1e6 / count;
+    }
+    
+    /**
+     * @return The longest recording in milliseconds, or 0 if there is none.
+     */
+    public synchronized double getMaxMillis()
+    {
+        return maxNanos / 1e6;
+    }
+    
+    @Override
+    public synchronized String toString()
+    {
+        return String.format ("last %.2f ms, mean %.2f ms, max %.2f ms over %d", getLastMillis(), getMeanMillis(), getMaxMillis(), count);
+    }
+}
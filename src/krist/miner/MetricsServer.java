@@ -0,0 +1,248 @@
+package krist.miner;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves a <code>PoolMiningEngine</code>'s statistics at <code>PATH</code>
+ * in the Prometheus text format, so that a whole fleet of miners can be
+ * scraped and graphed in one place.
+ *
+ * It runs on the JDK's own HTTP server, with a single daemon thread, and is
+ * only started if <code>metricsPort</code> is set in the configuration file.
+ * It listens on <code>metricsAddress</code>, by default only to this machine.
+ *
+ * Hash rates are given over each of <code>HashRateMeter.WINDOWS_SECONDS</code>,
+ * for the whole pool and for each miner. Counters cover hashes, batches,
+ * block changes and solutions, and each krist node's answer times are given
+ * as a histogram.
+ */
+public final class MetricsServer
+{
+    /**
+     * The path the metrics are served at.
+     */
+    public static final String PATH = "/metrics";
+    
+    /**
+     * The content type of the Prometheus text format.
+     */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    
+    private final PoolMiningEngine engine;
+    private final HttpServer       server;
+    
+    /**
+     * Starts serving at once.
+     *
+     * @param engine The engine to report on.
+     * @param address The address to listen on.
+     * @param port The port to listen on.
+     * @throws IOException If the port cannot be bound.
+     */
+    public MetricsServer (PoolMiningEngine engine, String address, int port) throws IOException
+    {
+        this.engine = engine;
+        this.server = HttpServer.create (new InetSocketAddress (address, port), 0);
+        
+        server.createContext (PATH, this::handle);
+        server.setExecutor (Executors.newSingleThreadExecutor (task ->
+        {
+            Thread thread = new Thread (task, "MetricsServer");
+            thread.setDaemon (true);
+            return thread;
+        }));
+        server.start();
+    }
+    
+    /**
+     * Starts serving the engine's metrics if the configuration file asks for it.
+     *
+     * @param engine The engine to report on.
+     * @return The server, or null if it is turned off or could not be started.
+     */
+    public static MetricsServer startConfigured (PoolMiningEngine engine)
+    {
+        int port = Utils.getConfiguredMetricsPort();
+        if (port <= 0)
+        {
+            return null;
+        }
+        
+        String address = Utils.getConfiguredMetricsAddress();
+        try
+        {
+            MetricsServer server = new MetricsServer (engine, address, port);
+            System.out.println ("Serving metrics at http://" + address + ":" + port + PATH + ".");
+            
+            return server;
+        }
+        catch (IOException | IllegalArgumentException failureReport)
+        {
+            System.out.println ("Failed to serve metrics on " + address + ":" + port + ": " + failureReport.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Stops serving.
+     */
+    public void stop()
+    {
+        server.stop (0);
+    }
+    
+    private void handle (HttpExchange exchange) throws IOException
+    {
+        try
+        {
+            if (!exchange.getRequestMethod().equals ("GET") && !exchange.getRequestMethod().equals ("HEAD"))
+            {
+                exchange.sendResponseHeaders (405, -1);
+                return;
+            }
+            
+            byte[] body = render().getBytes (StandardCharsets.UTF_8);
+            
+            exchange.getResponseHeaders().set ("Content-Type", CONTENT_TYPE);
+            if (exchange.getRequestMethod().equals ("HEAD"))
+            {
+                exchange.sendResponseHeaders (200, -1);
+                return;
+            }
+            
+            exchange.sendResponseHeaders (200, body.length);
+            try (OutputStream out = exchange.getResponseBody())
+            {
+                out.write (body);
+            }
+        }
+        finally
+        {
+            exchange.close();
+        }
+    }
+    
+    /**
+     * @return Every metric, in the Prometheus text format.
+     */
+    String render()
+    {
+        StringBuilder     out       = new StringBuilder();
+        MinerPool         pool      = engine.getPool();
+        HashRateMeter     meter     = engine.getHashRateMeter();
+        SolutionSubmitter submitter = engine.getSubmitter();
+        
+        family (out, "krist_miner_mining", "gauge", "Whether or not the miner is mining: 1 or 0.");
+        sample (out, "krist_miner_mining", "", engine.isMining() ? 1 : 0);
+        
+        family (out, "krist_miner_workers", "gauge", "The number of miner threads.");
+        sample (out, "krist_miner_workers", "", pool.getMinerCount());
+        
+        family (out, "krist_miner_hash_rate", "gauge", "Hashes per second across all miners over the trailing window.");
+        for (int seconds : HashRateMeter.WINDOWS_SECONDS)
+        {
+            sample (out, "krist_miner_hash_rate", "window=\"" + seconds + "s\"", meter.getRate (seconds));
+        }
+        
+        family (out, "krist_miner_worker_hash_rate", "gauge", "Hashes per second of one miner thread over the trailing window.");
+        for (Map.Entry<String, RateWindow> worker : meter.getWorkers().entrySet())
+        {
+            for (int seconds : HashRateMeter.WINDOWS_SECONDS)
+            {
+                sample (out, "krist_miner_worker_hash_rate", "worker=\"" + escape (worker.getKey()) + "\",window=\"" + seconds + "s\"", worker.getValue().getRate (seconds));
+            }
+        }
+        
+        counter (out, "krist_miner_hashes_total", "Nonces hashed.", pool.getHashes());
+        counter (out, "krist_miner_batches_total", "Batches of nonces handed to the hash engine.", pool.getBatches());
+        counter (out, "krist_miner_block_changes_total", "Times the miners were moved on to a new block.", engine.getBlockChanges());
+        counter (out, "krist_miner_solutions_found_total", "Solutions found by the miners.", engine.getSolutionsFound());
+        counter (out, "krist_miner_solutions_submitted_total", "Solution submissions sent to the krist server, retries included.", submitter.getSent());
+        counter (out, "krist_miner_solutions_accepted_total", "Solutions the krist server accepted.", submitter.getAccepted());
+        counter (out, "krist_miner_solutions_rejected_total", "Solutions the krist server rejected.", submitter.getRejected());
+        counter (out, "krist_miner_solutions_stale_total", "Solutions dropped because the block moved on before they were sent.", submitter.getStale());
+        
+        family (out, "krist_node_probe_duration_seconds", "histogram", "How long each krist node took to answer a probe.");
+        for (KristNode node : SyncNode.getKnownNodes())
+        {
+            histogram (out, "krist_node_probe_duration_seconds", "node=\"" + escape (node.getAddress()) + "\"", node.getLatency());
+        }
+        
+        return out.toString();
+    }
+    
+    private static void family (StringBuilder out, String name, String type, String help)
+    {
+        out.append ("# HELP ").append (name).append (' ').append (help).append ('\n');
+        out.append ("# TYPE ").append (name).append (' ').append (type).append ('\n');
+    }
+    
+    private static void counter (StringBuilder out, String name, String help, long value)
+    {
+        family (out, name, "counter", help);
+        sample (out, name, "", value);
+    }
+    
+    private static void sample (StringBuilder out, String name, String labels, double value)
+    {
+        out.append (name);
+        if (!labels.isEmpty())
+        {
+            out.append ('{').append (labels).append ('}');
+        }
+        
+        out.append (' ');
+        if (value == Math.rint (value) && !Double.isInfinite (value))
+        {
+            out.append ((long) value);
+        }
+        else
+        {
+            out.append (value);
+        }
+        
+        out.append ('\n');
+    }
+    
+    /**
+     * Writes a histogram's cumulative buckets, sum and count, bounds in seconds.
+     */
+    private static void histogram (StringBuilder out, String name, String labels, LatencyHistogram histogram)
+    {
+        long[] counts;
+        long   totalNanos;
+        
+        synchronized (histogram)
+        {
+            counts     = histogram.getCounts();
+            totalNanos = histogram.getTotalNanos();
+        }
+        
+        long cumulative = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++)
+        {
+            cumulative += counts[bucket];
+            
+            String bound = bucket < LatencyHistogram.BUCKET_BOUNDS_MILLIS.length ? String.valueOf (LatencyHistogram.BUCKET_BOUNDS_MILLIS[bucket] / 1000) : "+Inf";
+            sample (out, name + "_bucket", labels + ",le=\"" + bound + "\"", cumulative);
+        }
+        
+        sample (out, name + "_sum", labels, totalNanos / 1e9);
+        sample (out, name + "_count", labels, cumulative);
+    }
+    
+    /**
+     * @return The text as a label value: backslashes, quotes and line breaks escaped.
+     */
+    private static String escape (String text)
+    {
+        return text.replace ("\\", "\\\\").replace ("\"", "\\\"").replace ("\n", "\\n");
+    }
+}
@@ -0,0 +1,117 @@
+package krist.miner;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A snapshot of the SHA-256 state after every full 64 byte block of the
+ * constant <code>minerID + block</code> prefix has been compressed.
+ *
+ * Only the nonce changes between hashes, so there is no point in compressing
+ * the prefix blocks again for every nonce. A <code>NonceHasher</code> starts
+ * from this state and only finishes the tail: the leftover prefix bytes, the
+ * nonce and the padding.
+ *
+ * Instances are immutable and may be shared between mining threads. A new
+ * one is only needed when the block (or the address) changes.
+ */
+public final class Midstate
+{
+    private final String minerID;
+    private final String block;
+    private final int[]  state;
+    private final byte[] tail;
+    private final int    prefixLength;
+    private final NonceLayout layout;
+    
+    public Midstate (String minerID, String block)
+    {
+        byte[] prefix   = (minerID + block).getBytes (StandardCharsets.UTF_8);
+        int    absorbed = prefix.length - prefix.length % Sha256.BLOCK_LENGTH;
+        int[]  schedule = new int[64];
+        
+        this.minerID      = minerID;
+        this.block        = block;
+        this.prefixLength = prefix.length;
+        this.state        = new int[8];
+        this.tail         = new byte[prefix.length - absorbed];
+        this.layout       = NonceLayout.forPrefix (prefix.length);
+        
+        Sha256.reset (state);
+        for (int offset = 0; offset < absorbed; offset += Sha256.BLOCK_LENGTH)
+        {
+            Sha256.compress (state, schedule, prefix, offset);
+        }
+        
+        System.arraycopy (prefix, absorbed, tail, 0, tail.length);
+    }
+    
+    /**
+     * Checks whether or not this snapshot was taken for the given address and
+     * block, i.e whether it can be reused rather than rebuilt.
+     * 
+     * @param minerID Krist address being mined for.
+     * @param block The block being mined against.
+     * @return Whether or not this midstate covers the same prefix.
+     */
+    public boolean isFor (String minerID, String block)
+    {
+        return this.minerID.equals (minerID) && this.block.equals (block);
+    }
+    
+    /**
+     * Copies the snapshot state into <code>destination</code>.
+     * 
+     * @param destination Eight word array to copy the state into.
+     */
+    public void copyStateTo (int[] destination)
+    {
+        System.arraycopy (state, 0, destination, 0, state.length);
+    }
+    
+    /**
+     * Copies the prefix bytes which did not fill a whole block into
+     * <code>destination</code>, starting at index 0.
+     * 
+     * @param destination Array to copy the tail into.
+     * @return The number of bytes copied.
+     */
+    public int copyTailTo (byte[] destination)
+    {
+        System.arraycopy (tail, 0, destination, 0, tail.length);
+        return tail.length;
+    }
+    
+    /**
+     * @return The number of prefix bytes which were not absorbed into the snapshot.
+     */
+    public int getTailLength()
+    {
+        return tail.length;
+    }
+    
+    /**
+     * @return The length of the whole <code>minerID + block</code> prefix in bytes.
+     */
+    public int getPrefixLength()
+    {
+        return prefixLength;
+    }
+    
+    /**
+     * @return Where in the nonce space to mine so that each hash needs as few compressions as possible.
+     */
+    public NonceLayout getLayout()
+    {
+        return layout;
+    }
+    
+    public String getMinerID()
+    {
+        return minerID;
+    }
+    
+    public String getBlock()
+    {
+        return block;
+    }
+}
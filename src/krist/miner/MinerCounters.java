@@ -0,0 +1,97 @@
+package krist.miner;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Fields before the counters, so that they start on a cache line of their own.
+ */
+abstract class MinerCountersLeftPadding
+{
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+}
+
+/**
+ * The counters themselves, laid out after the left padding by inheritance.
+ */
+abstract class MinerCountersFields extends MinerCountersLeftPadding
+{
+    long hashes;
+    long batches;
+    long nonce;
+}
+
+/**
+ * How far one <code>ClusterMiner</code> has got, for the <code>Foreman</code>
+ * and the <code>MetricsServer</code> to read while it mines.
+ *
+ * Each miner has its own instance, and is the only one to write to it. The
+ * counters sit on a cache line of their own, padded on either side, so that
+ * one miner's writes never invalidate the line another miner, or anything
+ * else, is using. They are written with opaque stores once a batch, which is
+ * every <code>MinerPool.getBatchSize()</code> hashes, and read with opaque
+ * loads: no locks and no fences, just a guarantee that a read sees a whole
+ * value which is never older than the last one it saw.
+ */
+public final class MinerCounters extends MinerCountersFields
+{
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+    
+    private static final VarHandle HASHES;
+    private static final VarHandle BATCHES;
+    private static final VarHandle NONCE;
+    
+    static
+    {
+        try
+        {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            
+            HASHES  = lookup.findVarHandle (MinerCountersFields.class, "hashes", long.class);
+            BATCHES = lookup.findVarHandle (MinerCountersFields.class, "batches", long.class);
+            NONCE   = lookup.findVarHandle (MinerCountersFields.class, "nonce", long.class);
+        }
+        catch (ReflectiveOperationException lookupFailure)
+        {
+            throw new ExceptionInInitializerError (lookupFailure);
+        }
+    }
+    
+    /**
+     * Publishes the miner's progress. Only the owning miner may call this.
+     *
+     * @param hashes The number of nonces hashed since the miner was started.
+     * @param batches The number of batches handed to the hash engine since then.
+     * @param nonce The next nonce the miner will hash.
+     */
+    public void publish (long hashes, long batches, long nonce)
+    {
+        HASHES.setOpaque (this, hashes);
+        BATCHES.setOpaque (this, batches);
+        NONCE.setOpaque (this, nonce);
+    }
+    
+    /**
+     * @return The number of nonces hashed, as of the last batch.
+     */
+    public long getHashes()
+    {
+        return (long) HASHES.getOpaque (this);
+    }
+    
+    /**
+     * @return The number of batches handed to the hash engine, as of the last batch.
+     */
+    public long getBatches()
+    {
+        return (long) BATCHES.getOpaque (this);
+    }
+    
+    /**
+     * @return The next nonce the miner will hash, as of the last batch.
+     */
+    public long getNonce()
+    {
+        return (long) NONCE.getOpaque (this);
+    }
+}
@@ -0,0 +1,314 @@
+package krist.miner;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A set of long-lived <code>ClusterMiner</code> threads which stay alive
+ * across batches and blocks.
+ *
+ * Work is handed over by publishing a <code>MiningWork</code> in a volatile
+ * field and unparking the miners. Miners notice new work between batches and
+ * switch to it on their own; there is no thread creation, no sleeping and no
+ * waiting for the other miners anywhere on the way.
+ *
+ * Withdrawn work has its <code>CancellationToken</code> cancelled, which the
+ * miners check every <code>getBatchSize()</code> hashes. The time from the
+ * cancellation until the last miner has let go of the work is kept in
+ * <code>getStopLatency()</code>.
+ *
+ * The miner count, the hash engine and the batch size can all be changed
+ * while mining. None of them touches the work: new miners claim nonces from
+ * the same dispenser, retired miners finish the chunk they claimed, and the
+ * others switch engine or batch size at their next chunk.
+ */
+public class MinerPool
+{
+    /**
+     * The number of nonces handed out between calls to the listener's
+     * <code>onMineCompletion</code>.
+     */
+    public static final long NONCE_OFFSET = 10000000;
+    
+    private final MiningListener     listener;
+    private final List<ClusterMiner> miners      = new CopyOnWriteArrayList<>();
+    private final List<ClusterMiner> retiring    = new CopyOnWriteArrayList<>();
+    private final LatencyStats       stopLatency = new LatencyStats();
+    
+    /**
+     * Guards a miner's moves from <code>miners</code> to <code>retiring</code>
+     * to the retired totals, so that <code>getHashes</code> counts it exactly
+     * once all the way through.
+     */
+    private final Object retirement = new Object();
+    private long         retiredHashes;
+    private long         retiredBatches;
+    
+    private volatile MiningWork work;
+    private volatile HashEngine engine;
+    private volatile int        batchSize = ClusterMiner.BATCH_SIZE;
+    
+    /**
+     * @param listener Informed of finished ranges and solved blocks.
+     * @param engine The hash engine the miners should hash with.
+     */
+    public MinerPool (MiningListener listener, HashEngine engine)
+    {
+        this.listener = listener;
+        this.engine   = engine;
+    }
+    
+    /**
+     * Starts or retires miner threads until exactly <code>count</code> are
+     * running. New miners join in on the current work at once. Retired ones
+     * finish the chunk of nonces they are hashing first, so that none of the
+     * block's nonces are skipped.
+     * 
+     * @param count The number of miners to keep.
+     */
+    public synchronized void setMinerCount (int count)
+    {
+        while (miners.size() < count)
+        {
+            ClusterMiner miner  = new ClusterMiner (this);
+            Thread       thread = new Thread (miner, "Miner-" + miners.size());
+            
+            thread.setDaemon (true);
+            miner.setThread (thread);
+            miners.add (miner);
+            thread.start();
+        }
+        
+        while (miners.size() > count)
+        {
+            ClusterMiner miner;
+            synchronized (retirement)
+            {
+                miner = miners.remove (miners.size() - 1);
+                retiring.add (miner);
+            }
+            
+            miner.retire();
+        }
+    }
+    
+    /**
+     * Called by a retired miner as its thread ends, so that what it hashed
+     * still counts towards <code>getHashes</code>.
+     * 
+     * @param miner The miner which has stopped.
+     */
+    void onRetired (ClusterMiner miner)
+    {
+        synchronized (retirement)
+        {
+            retiredHashes  += miner.getChangeInNonce();
+            retiredBatches += miner.getBatches();
+            retiring.remove (miner);
+        }
+    }
+    
+    /**
+     * Publishes new work. Idle miners are woken; busy ones pick it up at their
+     * next batch.
+     * 
+     * @param newWork The work to mine.
+     */
+    public synchronized void submit (MiningWork newWork)
+    {
+        withdraw();
+        work = newWork;
+        
+        for (ClusterMiner miner : miners)
+        {
+            miner.wake();
+        }
+    }
+    
+    /**
+     * Withdraws the current work, sending every miner idle.
+     */
+    public synchronized void stop()
+    {
+        withdraw();
+        work = null;
+    }
+    
+    /**
+     * Withdraws the given work if it is still current. Only one miner can win
+     * this race for a given piece of work.
+     * 
+     * @param solved The work which was just solved.
+     * @return Whether or not the caller withdrew the work.
+     */
+    synchronized boolean retire (MiningWork solved)
+    {
+        if (work != solved)
+        {
+            return false;
+        }
+        
+        withdraw();
+        work = null;
+        return true;
+    }
+    
+    /**
+     * Cancels the current work, if there is any, so that the miners drop it
+     * at their next check.
+     */
+    private void withdraw()
+    {
+        if (work != null)
+        {
+            work.getToken().cancel (stopLatency);
+        }
+    }
+    
+    /**
+     * Parks the calling miner until there is work or it has been retired.
+     * Work which has been cancelled, but not replaced yet, counts as none.
+     * 
+     * @param miner The miner waiting.
+     * @return The current work, or null if the miner was retired.
+     */
+    MiningWork awaitWork (ClusterMiner miner)
+    {
+        MiningWork current;
+        
+        while (((current = work) == null || current.getToken().isCancelled()) && !miner.isRetired())
+        {
+            LockSupport.park (this);
+        }
+        
+        return miner.isRetired() ? null : current;
+    }
+    
+    /**
+     * @return The current work, or null if the pool is idle.
+     */
+    public MiningWork getWork()
+    {
+        return work;
+    }
+    
+    /**
+     * @return Whether or not there is work being mined.
+     */
+    public boolean isMining()
+    {
+        return work != null;
+    }
+    
+    /**
+     * Sets the number of nonces each miner hashes between checks for
+     * cancelled work. Smaller batches stop sooner; larger ones spend less
+     * time checking. Miners pick the new size up at their next batch.
+     * 
+     * @param size Nonces per batch, clamped to between 1 and <code>NonceDispenser.CHUNK_SIZE</code>.
+     */
+    public void setBatchSize (int size)
+    {
+        batchSize = Math.max (1, Math.min (size, NonceDispenser.CHUNK_SIZE));
+    }
+    
+    /**
+     * @return The number of nonces each miner hashes between checks for cancelled work.
+     */
+    public int getBatchSize()
+    {
+        return batchSize;
+    }
+    
+    /**
+     * @return How long the miners have taken to let go of work after it was withdrawn.
+     */
+    public LatencyStats getStopLatency()
+    {
+        return stopLatency;
+    }
+    
+    public HashEngine getEngine()
+    {
+        return engine;
+    }
+    
+    /**
+     * Switches the miners to another hash engine. Each one switches at its
+     * next chunk of nonces, carrying on with the same work.
+     * 
+     * @param engine The hash engine to hash with.
+     */
+    public void setEngine (HashEngine engine)
+    {
+        this.engine = engine;
+    }
+    
+    MiningListener getListener()
+    {
+        return listener;
+    }
+    
+    /**
+     * @return The miners currently in the pool. The list is safe to iterate while it changes.
+     */
+    public List<ClusterMiner> getMiners()
+    {
+        return miners;
+    }
+    
+    /**
+     * @return The number of nonces hashed by every miner the pool has had, retired or not.
+     */
+    public long getHashes()
+    {
+        synchronized (retirement)
+        {
+            long hashes = retiredHashes;
+            
+            for (ClusterMiner miner : miners)
+            {
+                hashes += miner.getChangeInNonce();
+            }
+            
+            for (ClusterMiner miner : retiring)
+            {
+                hashes += miner.getChangeInNonce();
+            }
+            
+            return hashes;
+        }
+    }
+    
+    /**
+     * @return The number of batches handed to the hash engine by every miner the pool has had, retired or not.
+     */
+    public long getBatches()
+    {
+        synchronized (retirement)
+        {
+            long batches = retiredBatches;
+            
+            for (ClusterMiner miner : miners)
+            {
+                batches += miner.getBatches();
+            }
+            
+            for (ClusterMiner miner : retiring)
+            {
+                batches += miner.getBatches();
+            }
+            
+            return batches;
+        }
+    }
+    
+    /**
+     * @return The number of miners currently in the pool.
+     */
+    public int getMinerCount()
+    {
+        return miners.size();
+    }
+}
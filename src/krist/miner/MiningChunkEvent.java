@@ -0,0 +1,48 @@
+package krist.miner;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A miner hashing one chunk of nonces it claimed from the dispenser, from
+ * start to end, @see <code>ClusterMiner.mineRange</code>. Gaps between a
+ * thread's chunks are time spent on anything but hashing.
+ */
+@Name ("krist.miner.MiningChunk")
+@Label ("Mining Chunk")
+@Category ({ "Krist Miner", "Mining" })
+@Description ("A miner hashing one chunk of nonces claimed from the dispenser.")
+@StackTrace (false)
+final class MiningChunkEvent extends Event
+{
+    @Label ("Block")
+    String block;
+    
+    @Label ("Start Nonce")
+    long startNonce;
+    
+    @Label ("End Nonce")
+    @Description ("The nonce the chunk ends before.")
+    long endNonce;
+    
+    @Label ("Hashes")
+    @Description ("The nonces hashed before the chunk ended or was left.")
+    long hashes;
+    
+    @Label ("Batches")
+    long batches;
+    
+    @Label ("Batch Size")
+    int batchSize;
+    
+    @Label ("Hash Engine")
+    String engine;
+    
+    @Label ("Outcome")
+    @Description ("completed, cancelled or solved.")
+    String outcome;
+}
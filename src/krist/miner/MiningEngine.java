@@ -0,0 +1,78 @@
+package krist.miner;
+
+/**
+ * Everything needed to run the miner, without any user interface: start and
+ * stop mining for an address, size the thread pool, pick up new work and
+ * read statistics.
+ *
+ * The Swing <code>gui.ManagerGUI</code> and the command line
+ * <code>HeadlessMiner</code> are both clients of this interface. Events are
+ * delivered to <code>MiningEngineListener</code>s on the engine's own threads.
+ */
+public interface MiningEngine
+{
+    /**
+     * Starts mining the latest block for the given address. Does nothing if
+     * the engine is already mining. This returns at once; the work is
+     * fetched in the background.
+     * 
+     * @param minerID The krist address to mine for.
+     * @param startingNonce The nonce at which to start.
+     */
+    public void start (String minerID, long startingNonce);
+    
+    /**
+     * Stops mining. The miner threads stay alive, idle, until mining starts again.
+     */
+    public void stop();
+    
+    /**
+     * @return Whether or not the engine is currently mining.
+     */
+    public boolean isMining();
+    
+    /**
+     * Starts or retires miner threads until exactly <code>count</code> are
+     * running. This can be called while mining.
+     * 
+     * @param count The number of miner threads.
+     */
+    public void setMinerCount (int count);
+    
+    /**
+     * @param size The number of nonces each miner hashes between checks for new work.
+     */
+    public void setBatchSize (int size);
+    
+    /**
+     * Switches the miners to another hash engine. This can be called while
+     * mining; the miners carry on with the same work.
+     * 
+     * @param engine The hash engine to hash with.
+     */
+    public void setHashEngine (HashEngine engine);
+    
+    /**
+     * @param millis The time between polls of the krist server for a new block.
+     *               This can be called while mining; it applies at once.
+     */
+    public void setPollInterval (long millis);
+    
+    /**
+     * Checks the krist server for a new block and, if there is one, swaps
+     * the new work into the running miners.
+     * 
+     * @return Whether or not the work changed.
+     */
+    public boolean refreshWork();
+    
+    /**
+     * @return A snapshot of the engine's statistics.
+     */
+    public MiningStats getStats();
+    
+    /**
+     * @param listener Informed of new work, mined blocks and the hash rate.
+     */
+    public void addListener (MiningEngineListener listener);
+}
@@ -0,0 +1,32 @@
+package krist.miner;
+
+/**
+ * Informed by a <code>MiningEngine</code> of what its miners are doing.
+ *
+ * Every method is executed on one of the engine's own threads: the block
+ * watcher, the solution submitter or the foreman. None of them is the Swing
+ * event thread, so a window has to hand its updates over with
+ * <code>SwingUtilities.invokeLater</code>. A listener should return quickly,
+ * as the engine waits for it.
+ */
+public interface MiningEngineListener
+{
+    /**
+     * Executed whenever the engine hands the miners work for a block.
+     */
+    public void onWorkChanged (String block, long target);
+    
+    /**
+     * Executed when a block has been solved and the krist server has accepted the solution.
+     * 
+     * @param blocksMined The number of blocks mined since the engine was created.
+     */
+    public void onBlockMined (String block, long nonce, int blocksMined);
+    
+    /**
+     * Executed about once a second while mining, with the hash rate over the
+     * last <code>Foreman.REPORTED_WINDOW_SECONDS</code>, and once with 0 when
+     * mining stops.
+     */
+    public void onHashRate (long hashesPerSecond);
+}
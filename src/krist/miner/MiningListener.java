@@ -2,5 +2,19 @@ package krist.miner;
 
 public interface MiningListener
 {
+    /**
+     * Executed on a miner's thread each time another
+     * <code>MinerPool.NONCE_OFFSET</code> nonces of the current work have
+     * been handed out without the block being solved. Only one miner reports
+     * each stretch; the rest carry on mining.
+     */
     public void onMineCompletion (ClusterMiner miner);
-}
\ No newline at end of file
+    
+    /**
+     * Executed on the miner's thread when it has solved the block, for the
+     * listener to hand the solution on for submission without holding the
+     * miner up. By then the solved work has been withdrawn from the pool, so
+     * every miner is idle until new work arrives.
+     */
+    public void onBlockSolved (ClusterMiner miner, MiningWork work, long nonce);
+}
@@ -0,0 +1,120 @@
+package krist.miner;
+
+/**
+ * A snapshot of a <code>MiningEngine</code>'s statistics.
+ */
+public final class MiningStats
+{
+    private final String       block;
+    private final long         hashRate;
+    private final int          blocksMined;
+    private final int          minerCount;
+    private final String       hashEngine;
+    private final LatencyStats stopLatency;
+    private final LatencyStats staleWork;
+    private final LatencyStats submitLatency;
+    private final long         solutionsAccepted;
+    private final long         solutionsRejected;
+    private final long         solutionsStale;
+    
+    public MiningStats (String block, long hashRate, int blocksMined, int minerCount, String hashEngine, LatencyStats stopLatency, LatencyStats staleWork,
+                        LatencyStats submitLatency, long solutionsAccepted, long solutionsRejected, long solutionsStale)
+    {
+        this.block       = block;
+        this.hashRate    = hashRate;
+        this.blocksMined = blocksMined;
+        this.minerCount  = minerCount;
+        this.hashEngine  = hashEngine;
+        this.stopLatency = stopLatency;
+        this.staleWork   = staleWork;
+        
+        this.submitLatency     = submitLatency;
+        this.solutionsAccepted = solutionsAccepted;
+        this.solutionsRejected = solutionsRejected;
+        this.solutionsStale    = solutionsStale;
+    }
+    
+    /**
+     * @return The block being mined, or null if the engine is not mining.
+     */
+    public String getBlock()
+    {
+        return block;
+    }
+    
+    /**
+     * @return Hashes per second across all miners, over the last <code>Foreman.REPORTED_WINDOW_SECONDS</code>.
+     */
+    public long getHashRate()
+    {
+        return hashRate;
+    }
+    
+    public int getBlocksMined()
+    {
+        return blocksMined;
+    }
+    
+    public int getMinerCount()
+    {
+        return minerCount;
+    }
+    
+    /**
+     * @return Name of the hash engine the miners use.
+     */
+    public String getHashEngine()
+    {
+        return hashEngine;
+    }
+    
+    /**
+     * @return How long the miners have taken to let go of withdrawn work, @see <code>MinerPool.getStopLatency</code>.
+     */
+    public LatencyStats getStopLatency()
+    {
+        return stopLatency;
+    }
+    
+    /**
+     * @return How long the miners may have spent on blocks which had already changed, @see <code>PoolMiningEngine.getStaleWork</code>.
+     */
+    public LatencyStats getStaleWork()
+    {
+        return staleWork;
+    }
+    
+    /**
+     * @return The time from finding each solution to the server's answer to it, @see <code>SolutionSubmitter.getLatency</code>.
+     */
+    public LatencyStats getSubmitLatency()
+    {
+        return submitLatency;
+    }
+    
+    public long getSolutionsAccepted()
+    {
+        return solutionsAccepted;
+    }
+    
+    public long getSolutionsRejected()
+    {
+        return solutionsRejected;
+    }
+    
+    /**
+     * @return The number of solutions dropped because the block moved on before they could be submitted.
+     */
+    public long getSolutionsStale()
+    {
+        return solutionsStale;
+    }
+    
+    @Override
+    public String toString()
+    {
+        return "block " + block + ", " + hashRate + " H/s on " + minerCount + " thread(s) with " + hashEngine
+             + ", " + blocksMined + " block(s) mined, stop latency " + stopLatency + ", stale work " + staleWork
+             + ", solutions " + solutionsAccepted + " accepted, " + solutionsRejected + " rejected, " + solutionsStale + " stale, submit latency " + submitLatency;
+    }
+}
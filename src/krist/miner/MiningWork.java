@@ -0,0 +1,96 @@
+package krist.miner;
+
+/**
+ * One unit of work handed to the <code>MinerPool</code>: the prefix midstate
+ * for the block being mined, the target from getwork, the dispenser which
+ * shares the block's nonce space out between the miners, the token which
+ * tells them to stop, and the checkpoint which remembers how far they got.
+ *
+ * Apart from the dispenser's cursor and the token, instances are immutable. A new one is
+ * published whenever the block, the target or the address changes; miners
+ * compare references to notice.
+ */
+public final class MiningWork
+{
+    private final Midstate          midstate;
+    private final long              target;
+    private final long              firstNonce;
+    private final NonceDispenser    dispenser;
+    private final CancellationToken token;
+    
+    private final NonceCheckpoints.Checkpoint checkpoint;
+    
+    /**
+     * @param midstate Prefix snapshot for the address and block.
+     * @param target The target which a hash must fall below.
+     * @param firstNonce The nonce at which to start, @see <code>NonceLayout.getFirstNonce</code>.
+     * @param checkpoint Where to record how far the miners get, or null not to.
+     */
+    public MiningWork (Midstate midstate, long target, long firstNonce, NonceCheckpoints.Checkpoint checkpoint)
+    {
+        this.midstate   = midstate;
+        this.target     = target;
+        this.firstNonce = firstNonce;
+        this.dispenser  = new NonceDispenser (firstNonce, Long.MAX_VALUE);
+        this.token      = new CancellationToken();
+        this.checkpoint = checkpoint;
+    }
+    
+    /**
+     * Called by a miner which has hashed the whole of a chunk it claimed
+     * without the work being cancelled. Moves the checkpoint forward if every
+     * chunk before it is finished too.
+     * 
+     * @param start The first nonce of the chunk.
+     */
+    void onChunkCompleted (long start)
+    {
+        long completedUpTo = dispenser.complete (start);
+        
+        if (checkpoint != null)
+        {
+            checkpoint.advance (completedUpTo);
+        }
+    }
+    
+    public Midstate getMidstate()
+    {
+        return midstate;
+    }
+    
+    public long getTarget()
+    {
+        return target;
+    }
+    
+    public long getFirstNonce()
+    {
+        return firstNonce;
+    }
+    
+    /**
+     * @return The dispenser from which miners claim chunks of this work's nonce space.
+     */
+    public NonceDispenser getDispenser()
+    {
+        return dispenser;
+    }
+    
+    /**
+     * @return The token which is cancelled when this work is withdrawn from the pool.
+     */
+    public CancellationToken getToken()
+    {
+        return token;
+    }
+    
+    public String getBlock()
+    {
+        return midstate.getBlock();
+    }
+    
+    public String getMinerID()
+    {
+        return midstate.getMinerID();
+    }
+}
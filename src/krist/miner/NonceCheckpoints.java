@@ -0,0 +1,251 @@
+package krist.miner;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Remembers how far the miners got through each block, so that after a
+ * restart mining carries on where it left off instead of hashing the block's
+ * nonces all over again.
+ *
+ * The file is small and memory-mapped: a header, then <code>SLOT_COUNT</code>
+ * slots, each holding an address, a block and the nonce below which every
+ * nonce of that block has been hashed for that address. Moving a checkpoint
+ * forward is a single store into the mapping, which the operating system
+ * keeps if the JVM dies and writes out to the disk in its own time.
+ *
+ * There is only ever one block worth mining, so whenever a checkpoint for a
+ * block is asked for, the slots of every other block are cleared.
+ */
+public final class NonceCheckpoints
+{
+    /**
+     * The checkpoint file, next to the configuration file.
+     */
+    public static final String CHECKPOINT_FILE_PATH = "nonces.checkpoint";
+    
+    /**
+     * How many address and block pairs are remembered at once.
+     */
+    public static final int SLOT_COUNT = 16;
+    
+    /**
+     * Marks the file as one of ours, in this layout.
+     */
+    private static final long MAGIC = 0x4b4e4f4e43453031L;
+    
+    private static final int HEADER_SIZE  = 8;
+    private static final int NONCE_SIZE   = 8;
+    private static final int ADDRESS_SIZE = 24;
+    private static final int BLOCK_SIZE   = 16;
+    private static final int SLOT_SIZE    = NONCE_SIZE + ADDRESS_SIZE + BLOCK_SIZE;
+    
+    /**
+     * The mapped file, or null if it could not be mapped; then nothing is remembered.
+     */
+    private final MappedByteBuffer buffer;
+    
+    /**
+     * The checkpoint handed out for each slot, if any. Only it may write there.
+     */
+    private final Checkpoint[] owners = new Checkpoint[SLOT_COUNT];
+    
+    private int nextEviction;
+    
+    public NonceCheckpoints (String path)
+    {
+        MappedByteBuffer mapping = null;
+        
+        try (FileChannel channel = FileChannel.open (Paths.get (path), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            // The mapping stays valid once the channel is closed.
+            mapping = channel.map (FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + SLOT_COUNT * SLOT_SIZE);
+            
+            if (mapping.getLong (0) != MAGIC)
+            {
+                for (int index = 0; index < mapping.capacity(); index++)
+                {
+                    mapping.put (index, (byte) 0);
+                }
+                
+                mapping.putLong (0, MAGIC);
+            }
+        }
+        catch (IOException | UnsupportedOperationException failureReport)
+        {
+            System.out.println ("Failed to open the nonce checkpoints: " + failureReport.getMessage() + ". Mining will start every block from the beginning.");
+            mapping = null;
+        }
+        
+        this.buffer = mapping;
+    }
+    
+    /**
+     * Finds the checkpoint for the given address and block, or starts one at
+     * nonce 0, and forgets the checkpoints of every other block.
+     *
+     * @param minerID The krist address being mined for.
+     * @param block The block being mined.
+     * @return The checkpoint. If it cannot be kept, it reads 0 and ignores <code>advance</code>.
+     */
+    public synchronized Checkpoint checkpoint (String minerID, String block)
+    {
+        byte[] address = toField (minerID, ADDRESS_SIZE);
+        byte[] blockID = toField (block, BLOCK_SIZE);
+        
+        if (buffer == null || address == null || blockID == null)
+        {
+            return new Checkpoint (-1);
+        }
+        
+        int found = -1;
+        int free  = -1;
+        
+        for (int slot = 0; slot < SLOT_COUNT; slot++)
+        {
+            if (!Arrays.equals (readField (slot, NONCE_SIZE + ADDRESS_SIZE, BLOCK_SIZE), blockID))
+            {
+                clear (slot);
+            }
+            
+            if (isFree (slot))
+            {
+                free = free < 0 ? slot : free;
+            }
+            else if (Arrays.equals (readField (slot, NONCE_SIZE, ADDRESS_SIZE), address))
+            {
+                found = slot;
+            }
+        }
+        
+        if (found < 0)
+        {
+            // Every slot is taken by other addresses on this block.
+            found = free >= 0 ? free : nextEviction++ % SLOT_COUNT;
+            
+            clear (found);
+            writeField (found, NONCE_SIZE, address);
+            writeField (found, NONCE_SIZE + ADDRESS_SIZE, blockID);
+        }
+        
+        Checkpoint checkpoint = new Checkpoint (found);
+        owners[found] = checkpoint;
+        
+        return checkpoint;
+    }
+    
+    /**
+     * Forces the checkpoints to the disk. Not needed to survive the JVM
+     * dying, only the whole machine.
+     */
+    public synchronized void sync()
+    {
+        if (buffer != null)
+        {
+            buffer.force();
+        }
+    }
+    
+    private boolean isFree (int slot)
+    {
+        return buffer.get (HEADER_SIZE + slot * SLOT_SIZE + NONCE_SIZE) == 0;
+    }
+    
+    private void clear (int slot)
+    {
+        // The nonce first, so that a crash part way through cannot leave a
+        // nonce under another address or block.
+        buffer.putLong (HEADER_SIZE + slot * SLOT_SIZE, 0);
+        for (int index = NONCE_SIZE; index < SLOT_SIZE; index++)
+        {
+            buffer.put (HEADER_SIZE + slot * SLOT_SIZE + index, (byte) 0);
+        }
+        
+        owners[slot] = null;
+    }
+    
+    private byte[] readField (int slot, int offset, int size)
+    {
+        byte[] field = new byte[size];
+        for (int index = 0; index < size; index++)
+        {
+            field[index] = buffer.get (HEADER_SIZE + slot * SLOT_SIZE + offset + index);
+        }
+        
+        return field;
+    }
+    
+    private void writeField (int slot, int offset, byte[] field)
+    {
+        for (int index = 0; index < field.length; index++)
+        {
+            buffer.put (HEADER_SIZE + slot * SLOT_SIZE + offset + index, field[index]);
+        }
+    }
+    
+    /**
+     * @return The text as a zero-padded field of the given size, or null if it is empty or does not fit.
+     */
+    private static byte[] toField (String text, int size)
+    {
+        byte[] bytes = text.getBytes (StandardCharsets.US_ASCII);
+        if (bytes.length == 0 || bytes.length > size)
+        {
+            return null;
+        }
+        
+        return Arrays.copyOf (bytes, size);
+    }
+    
+    /**
+     * How far the miners have got through one block for one address.
+     */
+    public final class Checkpoint
+    {
+        private final int slot;
+        
+        private Checkpoint (int slot)
+        {
+            this.slot = slot;
+        }
+        
+        /**
+         * @return The nonce below which the block has been hashed, or 0 if nothing is known.
+         */
+        public long getNonce()
+        {
+            synchronized (NonceCheckpoints.this)
+            {
+                return isOwner() ? buffer.getLong (HEADER_SIZE + slot * SLOT_SIZE) : 0;
+            }
+        }
+        
+        /**
+         * Moves the checkpoint forward. It never moves back, and once the slot
+         * has been given to another block this does nothing.
+         *
+         * @param nonce The nonce below which every nonce has now been hashed.
+         */
+        public void advance (long nonce)
+        {
+            synchronized (NonceCheckpoints.this)
+            {
+                int offset = HEADER_SIZE + slot * SLOT_SIZE;
+                if (isOwner() && nonce > buffer.getLong (offset))
+                {
+                    buffer.putLong (offset, nonce);
+                }
+            }
+        }
+        
+        private boolean isOwner()
+        {
+            return slot >= 0 && owners[slot] == this;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package krist.miner;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out small chunks of the nonce space to miners on demand, from a
+ * shared cursor which is only ever moved with a single atomic add.
+ *
+ * Every chunk starts where the previous one ended, so the nonces handed out
+ * are always exactly <code>[firstNonce, getCursor())</code>: no gaps, no
+ * overlaps. Fast miners simply claim more chunks than slow ones, so no core
+ * sits idle until the block changes.
+ *
+ * Chunks may be finished in any order. Miners report each one they finish
+ * to <code>complete</code>, which keeps the nonce below which every chunk is
+ * done, for <code>NonceCheckpoints</code>.
+ */
+public final class NonceDispenser
+{
+    /**
+     * The number of nonces in one chunk. Small enough that the last chunks
+     * claimed before a block change finish quickly, large enough that the
+     * cursor is not contended.
+     */
+    public static final int CHUNK_SIZE = 65536;
+    
+    private final long       firstNonce;
+    private final long       endNonce;
+    private final AtomicLong cursor;
+    
+    /**
+     * The nonce below which every chunk is finished, and the starts of the
+     * chunks after it which are finished too. However far ahead of a slow
+     * miner the others get, their chunks are kept until it catches up.
+     * Guarded by <code>this</code>.
+     */
+    private long            completedUpTo;
+    private final Set<Long> completedAhead = new HashSet<>();
+    
+    /**
+     * @param firstNonce The first nonce to hand out.
+     * @param endNonce The nonce at which to stop handing out chunks.
+     */
+    public NonceDispenser (long firstNonce, long endNonce)
+    {
+        this.firstNonce = firstNonce;
+        this.endNonce   = endNonce;
+        this.cursor     = new AtomicLong (firstNonce);
+        
+        this.completedUpTo = firstNonce;
+    }
+    
+    /**
+     * Claims the next chunk.
+     * 
+     * @return The first nonce of the claimed chunk, or -1 if the nonce space is used up.
+     */
+    public long claim()
+    {
+        long start = cursor.getAndAdd (CHUNK_SIZE);
+        
+        // Past the end, or so far past it that the cursor wrapped around.
+        if (start >= endNonce || start < firstNonce)
+        {
+            return -1;
+        }
+        
+        return start;
+    }
+    
+    /**
+     * Reports a claimed chunk as fully hashed.
+     * 
+     * @param start The first nonce of the chunk.
+     * @return The nonce below which every nonce has now been hashed.
+     */
+    public synchronized long complete (long start)
+    {
+        if (start >= completedUpTo)
+        {
+            completedAhead.add (start);
+            
+            while (completedAhead.remove (completedUpTo))
+            {
+                completedUpTo += CHUNK_SIZE;
+            }
+        }
+        
+        return Math.min (completedUpTo, endNonce);
+    }
+    
+    /**
+     * @param start The first nonce of a claimed chunk.
+     * @return The number of nonces in the chunk; only the last chunk can be short.
+     */
+    public int getChunkLength (long start)
+    {
+        return (int) Math.min (CHUNK_SIZE, endNonce - start);
+    }
+    
+    /**
+     * Checks whether the given chunk is the first one of a new stretch of
+     * <code>interval</code> nonces, for doing something every so many nonces
+     * no matter which miner gets there.
+     * 
+     * @param start The first nonce of a claimed chunk.
+     * @param interval The stretch length; a multiple of <code>CHUNK_SIZE</code> for this to be exact.
+     * @return Whether the chunk starts a new stretch, other than the first.
+     */
+    public boolean startsInterval (long start, long interval)
+    {
+        return start != firstNonce && (start - firstNonce) % interval < CHUNK_SIZE;
+    }
+    
+    public long getFirstNonce()
+    {
+        return firstNonce;
+    }
+    
+    /**
+     * @return The first nonce that has not been handed out yet.
+     */
+    public long getCursor()
+    {
+        long next = cursor.get();
+        
+        // Claimed so far past the end that the cursor wrapped around.
+        return next < firstNonce ? endNonce : Math.min (next, endNonce);
+    }
+}
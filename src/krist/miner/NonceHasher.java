@@ -0,0 +1,267 @@
+package krist.miner;
+
+/**
+ * Hashes <code>minerID + block + Long.toString(nonce, 36)</code> for a fixed
+ * miner ID and block without allocating anything per nonce.
+ *
+ * Hashing starts from a shared <code>Midstate</code>, so the full blocks of
+ * the prefix are never compressed again. The rest of the message lives in a
+ * reusable byte array: the leftover prefix bytes are copied in once, and the
+ * base 36 digits of the nonce follow them. The digits are counted upwards in
+ * place by a <code>Base36Counter</code>, so moving on to the next nonce
+ * usually rewrites a single byte, and the padding only has to be rebuilt when
+ * the nonce gains a digit. When the tail spans more than one block, the state
+ * before the final block is cached until a digit in an earlier block
+ * changes, so the usual cost per nonce is a single compression whenever the
+ * changing digits sit in the final block (@see <code>NonceLayout</code>).
+ * Only the top 48 bits of the digest are handed back, as a primitive long
+ * which can be compared directly against krist's target.
+ *
+ * Each mining thread needs its own instance.
+ */
+public final class NonceHasher
+{
+    /**
+     * The longest a nonce can be when written in base 36: a sign and 13 digits.
+     */
+    static final int MAX_NONCE_LENGTH = 14;
+    
+    private final Midstate midstate;
+    private final byte[]   message;
+    private final int      tailLength;
+    private final int[]    initialState    = new int[8];
+    private final int[]    finalBlockState = new int[8];
+    private final int[]    state           = new int[8];
+    private final int[]    schedule        = new int[64];
+    private final Base36Counter counter;
+    
+    private int     paddedLength;
+    private boolean isFinalBlockStateValid;
+    private long    compressions;
+    
+    public NonceHasher (Midstate midstate)
+    {
+        this.midstate   = midstate;
+        this.message    = new byte[Sha256.BLOCK_LENGTH + MAX_NONCE_LENGTH + Sha256.BLOCK_LENGTH + Sha256.LENGTH_FIELD];
+        this.tailLength = midstate.copyTailTo (message);
+        this.counter    = new Base36Counter (message, tailLength);
+        
+        midstate.copyStateTo (initialState);
+        
+        seek (0);
+    }
+    
+    /**
+     * Moves the hasher to the given nonce, rewriting all of its digits and the
+     * padding.
+     *
+     * @param nonce The non-negative nonce to hash next.
+     */
+    public void seek (long nonce)
+    {
+        counter.set (nonce);
+        repad();
+    }
+    
+    /**
+     * Moves the hasher on to the next nonce.
+     */
+    public void increment()
+    {
+        onDigitsChanged (counter.increment());
+    }
+    
+    /**
+     * Moves the hasher <code>count</code> nonces further on.
+     *
+     * @param count The number of nonces to skip ahead by.
+     */
+    public void advance (int count)
+    {
+        onDigitsChanged (counter.add (count));
+    }
+    
+    /**
+     * Invalidates whatever the last change to the digits made stale.
+     *
+     * @param changedIndex Index of the leftmost changed digit, or <code>Base36Counter.GREW</code>.
+     */
+    private void onDigitsChanged (int changedIndex)
+    {
+        if (changedIndex == Base36Counter.GREW)
+        {
+            repad();
+        }
+        else if (changedIndex < paddedLength - Sha256.BLOCK_LENGTH)
+        {
+            isFinalBlockStateValid = false;
+        }
+    }
+    
+    /**
+     * @return The nonce which <code>hash()</code> will hash.
+     */
+    public long getNonce()
+    {
+        return counter.getValue();
+    }
+    
+    /**
+     * Hashes the prefix followed by the base 36 representation of the given
+     * nonce. This is the same as a <code>seek</code> followed by a
+     * <code>hash</code>.
+     *
+     * @param nonce The non-negative nonce to append to the prefix.
+     * @return The first 48 bits of the SHA-256 digest, @see <code>Sha256.top48</code>.
+     */
+    public long hash (long nonce)
+    {
+        seek (nonce);
+        return hash();
+    }
+    
+    /**
+     * Hashes the prefix followed by the base 36 representation of the current
+     * nonce.
+     *
+     * @return The first 48 bits of the SHA-256 digest, @see <code>Sha256.top48</code>.
+     */
+    public long hash()
+    {
+        System.arraycopy (initialState, 0, state, 0, state.length);
+        for (int offset = 0; offset < paddedLength; offset += Sha256.BLOCK_LENGTH)
+        {
+            Sha256.compress (state, schedule, message, offset);
+        }
+        
+        return Sha256.top48 (state[0], state[1]);
+    }
+    
+    /**
+     * Checks whether the current nonce's hash falls below the target, doing
+     * as little of the final compression as possible.
+     * @see <code>Sha256.finishBelow</code>.
+     *
+     * This is the check for the mining loop. Candidates it lets through can
+     * be confirmed with the full digest from <code>hash</code>.
+     *
+     * @param target The target which the top 48 bits of the hash must fall below.
+     * @return Whether or not the hash is below the target.
+     */
+    public boolean isBelow (long target)
+    {
+        int finalBlock = prepareFinalBlock();
+        
+        compressions++;
+        return Sha256.finishBelow (getFinalBlockState(), schedule, message, finalBlock, target);
+    }
+    
+    /**
+     * Makes sure the state before the final block is up to date for the
+     * current nonce, compressing the earlier tail blocks if a digit in them
+     * has changed.
+     *
+     * @return Offset of the final block within <code>getMessage()</code>.
+     */
+    int prepareFinalBlock()
+    {
+        int finalBlock = paddedLength - Sha256.BLOCK_LENGTH;
+        
+        if (finalBlock != 0 && !isFinalBlockStateValid)
+        {
+            System.arraycopy (initialState, 0, finalBlockState, 0, finalBlockState.length);
+            for (int offset = 0; offset < finalBlock; offset += Sha256.BLOCK_LENGTH)
+            {
+                Sha256.compress (finalBlockState, schedule, message, offset);
+                compressions++;
+            }
+            
+            isFinalBlockStateValid = true;
+        }
+        
+        return finalBlock;
+    }
+    
+    /**
+     * @return The state before the final block, as of the last <code>prepareFinalBlock</code>.
+     */
+    int[] getFinalBlockState()
+    {
+        return paddedLength == Sha256.BLOCK_LENGTH ? initialState : finalBlockState;
+    }
+    
+    /**
+     * @return The buffer holding the tail of the message for the current nonce.
+     */
+    byte[] getMessage()
+    {
+        return message;
+    }
+    
+    /**
+     * @return The number of compressions <code>isBelow</code> has run so far,
+     *         for measuring the real cost per hash of the current layout.
+     */
+    public long getCompressions()
+    {
+        return compressions;
+    }
+    
+    /**
+     * Rewrites the padding behind the digits for the current nonce length.
+     */
+    private void repad()
+    {
+        int nonceLength = counter.getLength();
+        paddedLength    = Sha256.pad (message, tailLength + nonceLength, midstate.getPrefixLength() + nonceLength);
+        
+        isFinalBlockStateValid = false;
+    }
+    
+    /**
+     * @return The midstate this hasher finishes from.
+     */
+    public Midstate getMidstate()
+    {
+        return midstate;
+    }
+    
+    /**
+     * Writes the same characters as <code>Long.toString(nonce, 36)</code> into
+     * <code>destination</code> as ASCII bytes. This is Yevano's method of
+     * computing a nonce: convert a long to a base 36 number.
+     *
+     * @param destination Array to write the digits into.
+     * @param offset Index at which the first character is written.
+     * @param nonce The nonce to encode.
+     * @return The number of bytes written.
+     */
+    static int writeNonce (byte[] destination, int offset, long nonce)
+    {
+        // Count the digits first so that they can be written in place from
+        // the least significant end. Working with the negated value covers
+        // Long.MIN_VALUE, just like Long.toString does.
+        boolean negative = nonce < 0;
+        long    value    = negative ? nonce : -nonce;
+        int     length   = negative ? 2 : 1;
+        
+        for (long remaining = value / 36; remaining != 0; remaining /= 36)
+        {
+            length++;
+        }
+        
+        for (int index = offset + length - 1; index >= offset + (negative ? 1 : 0); index--)
+        {
+            int digit = (int) -(value % 36);
+            destination[index] = (byte) (digit < 10 ? '0' + digit : 'a' + digit - 10);
+            value /= 36;
+        }
+        
+        if (negative)
+        {
+            destination[offset] = '-';
+        }
+        
+        return length;
+    }
+}
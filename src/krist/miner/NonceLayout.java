@@ -0,0 +1,128 @@
+package krist.miner;
+
+/**
+ * Decides where in the nonce space mining should happen for a given prefix
+ * length, so that the digits which change from one nonce to the next, along
+ * with the padding, all land in the final compression block.
+ *
+ * The leftover prefix bytes (those not absorbed into the <code>Midstate</code>)
+ * come first in the tail, followed by the nonce digits and at least 9 bytes of
+ * padding. Two layouts are considered:
+ *  - Direct: nonces short enough that the tail fits in one block. Mining
+ *    starts at 0, as it always has.
+ *  - Absorbed: 13 digit nonces, whose leading digits complete the prefix's
+ *    block. Those digits only change every 36^n nonces, and when they do the
+ *    <code>NonceHasher</code> compresses that block once and caches it, so
+ *    the rest of the time every hash is a single compression again.
+ *
+ * Only where mining starts changes. The nonces themselves, and the way they
+ * are submitted by <code>Utils.submitSolution</code>, are the same as ever.
+ */
+public final class NonceLayout
+{
+    /**
+     * The number of base 36 digits in the largest positive long.
+     */
+    static final int MAX_DIGITS = 13;
+    
+    /**
+     * Nonces at or above this are 13 digits long.
+     */
+    static final long THIRTEEN_DIGITS = pow36 (MAX_DIGITS - 1);
+    
+    /**
+     * The most digits a tail can hold alongside the minimum padding.
+     */
+    private static final int TAIL_ROOM = Sha256.BLOCK_LENGTH - Sha256.LENGTH_FIELD - 1;
+    
+    private final long   firstNonce;
+    private final long   endNonce;
+    private final double compressionsPerHash;
+    
+    private NonceLayout (long firstNonce, long endNonce, double compressionsPerHash)
+    {
+        this.firstNonce          = firstNonce;
+        this.endNonce            = endNonce;
+        this.compressionsPerHash = compressionsPerHash;
+    }
+    
+    /**
+     * Picks the layout for a prefix of the given length.
+     * 
+     * @param prefixLength Length of <code>minerID + block</code> in bytes.
+     * @return The layout to mine with.
+     */
+    public static NonceLayout forPrefix (int prefixLength)
+    {
+        int tailLength = prefixLength % Sha256.BLOCK_LENGTH;
+        
+        // Direct: every nonce of up to this many digits fits in the tail.
+        int  directDigits = Math.min (MAX_DIGITS, TAIL_ROOM - tailLength);
+        long directEnd    = directDigits >= MAX_DIGITS ? Long.MAX_VALUE : directDigits > 0 ? pow36 (directDigits) : 0;
+        
+        // Absorbed: the leading digits of a 13 digit nonce finish the block,
+        // leaving the rest free to change.
+        int constantDigits = Sha256.BLOCK_LENGTH - tailLength;
+        int varyingDigits  = MAX_DIGITS - constantDigits;
+        
+        /**
+         * Direct wins whenever it reaches 13 digit nonces anyway, or when the
+         * prefix leaves too much of its block for 13 digits to finish it.
+         * Otherwise direct would run out after a few thousand nonces and cost
+         * two compressions from then on.
+         */
+        if (directEnd >= THIRTEEN_DIGITS || varyingDigits < 1)
+        {
+            return new NonceLayout (0, directEnd, 1);
+        }
+        
+        return new NonceLayout (THIRTEEN_DIGITS, Long.MAX_VALUE, 1 + 1.0 / pow36 (varyingDigits));
+    }
+    
+    /**
+     * @return The nonce at which mining should start.
+     */
+    public long getFirstNonce()
+    {
+        return firstNonce;
+    }
+    
+    /**
+     * @return The first nonce past the range in which the layout holds.
+     *         Nonces past it still hash correctly, just with an extra compression.
+     */
+    public long getEndNonce()
+    {
+        return endNonce;
+    }
+    
+    /**
+     * @return The average number of SHA-256 compressions needed for each hash
+     *         within the layout's range.
+     */
+    public double getCompressionsPerHash()
+    {
+        return compressionsPerHash;
+    }
+    
+    /**
+     * Computes 36 to the power of <code>exponent</code>.
+     */
+    static long pow36 (int exponent)
+    {
+        long result = 1;
+        
+        for (int power = 0; power < exponent; power++)
+        {
+            result *= 36;
+        }
+        
+        return result;
+    }
+    
+    @Override
+    public String toString()
+    {
+        return String.format ("nonces %d to %d at %.4f compressions per hash", firstNonce, endNonce, compressionsPerHash);
+    }
+}
@@ -0,0 +1,536 @@
+package krist.miner;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The <code>MiningEngine</code> behind both the Swing window and the command
+ * line: a <code>MinerPool</code> of long-lived miners, a <code>Foreman</code>
+ * to measure them, a <code>BlockWatcher</code> to notice new blocks, a
+ * <code>SolutionSubmitter</code> to send their solutions, the
+ * <code>NonceCheckpoints</code> which let them resume a block after a
+ * restart, and the krist server calls that keep them supplied with work.
+ *
+ * Whenever the block changes under the miners, the time they may have spent
+ * on the old one is recorded in <code>getStaleWork()</code>: the time since
+ * the last poll which still saw the old block.
+ *
+ * Nothing here waits for the krist server. While it cannot be reached the
+ * miners keep hashing the last work they were given, the submitter keeps
+ * their solutions until it can send them, and the watcher keeps trying with
+ * backoff. Once the server answers again, fresh work is fetched.
+ */
+public class PoolMiningEngine implements MiningEngine, MiningListener
+{
+    /**
+     * The default time between polls for a new block, in milliseconds.
+     */
+    public static final long DEFAULT_POLL_INTERVAL = 1000;
+    
+    /**
+     * The shortest allowed time between polls, so as not to hammer the node.
+     */
+    public static final long MIN_POLL_INTERVAL = 100;
+    
+    private final List<MiningEngineListener> listeners      = new CopyOnWriteArrayList<>();
+    private final LatencyStats               staleWork      = new LatencyStats();
+    private final HashRateMeter              meter          = new HashRateMeter();
+    private final AtomicLong                 solutionsFound = new AtomicLong();
+    private final NonceCheckpoints           checkpoints;
+    
+    /**
+     * Both call back into the engine, so they are wired up by
+     * <code>create</code> once the engine is fully constructed.
+     */
+    private MinerPool         pool;
+    private SolutionSubmitter submitter;
+    
+    private Foreman          foreman       = null;
+    private Thread           foremanThread = null;
+    private BlockWatcher     watcher       = null;
+    private volatile boolean isMining      = false;
+    private volatile long    hashRate      = 0;
+    private volatile long    pollInterval  = DEFAULT_POLL_INTERVAL;
+    private volatile int     blocksMined;
+    private volatile long    blockChanges;
+    
+    /**
+     * When the current work was fetched, by <code>System.nanoTime</code>.
+     * Polls which started before then may have seen an older block.
+     */
+    private long workFetchedAt;
+    
+    private String minerID;
+    
+    /**
+     * The nonce at which to start, for the first work after <code>start</code>.
+     */
+    private long startingNonce;
+    
+    /**
+     * The current block that the miners are working on. This may or may not
+     * be the latest block, however.
+     */
+    private volatile String currentBlock;
+    
+    /**
+     * The last block the miners solved. Once they have, they sit idle rather
+     * than hash it any longer, so no work goes stale when it changes.
+     */
+    private volatile String solvedBlock;
+    
+    /**
+     * The SHA-256 state of <code>minerID + currentBlock</code>, shared by
+     * every miner. It is only rebuilt when the block or address changes.
+     */
+    private Midstate midstate;
+    
+    private PoolMiningEngine()
+    {
+        this.checkpoints = new NonceCheckpoints (NonceCheckpoints.CHECKPOINT_FILE_PATH);
+    }
+    
+    /**
+     * Creates an engine with its pool and submitter. The miner threads are
+     * started by <code>setMinerCount</code>, and the rest by <code>start</code>.
+     * 
+     * @param hashEngine The hash engine the miners should hash with.
+     * @return The engine, not yet mining.
+     */
+    public static PoolMiningEngine create (HashEngine hashEngine)
+    {
+        PoolMiningEngine engine = new PoolMiningEngine();
+        engine.pool      = new MinerPool (engine, hashEngine);
+        engine.submitter = new SolutionSubmitter (engine, new SolutionJournal (SolutionJournal.JOURNAL_FILE_PATH));
+        
+        return engine;
+    }
+    
+    @Override
+    public synchronized void start (String minerID, long startingNonce)
+    {
+        if (isMining)
+        {
+            return;
+        }
+        
+        this.minerID       = minerID;
+        this.startingNonce = startingNonce;
+        this.isMining      = true;
+        
+        // The watcher fetches the first work straight away, so that this
+        // returns without waiting for the krist server.
+        submitter.startSending();
+        
+        /**
+         * Create a new <code>krist.miner.Foreman</code> object to
+         * "supervise" the miners.
+         * 
+         * Essentially, the foreman will serve to compute the hash rate
+         * of the program as a whole, not just each miner individually.
+         */
+        foreman       = new Foreman (this, pool, meter);
+        foremanThread = new Thread (foreman, "Foreman");
+        foremanThread.start();
+        
+        watcher = new BlockWatcher (this);
+        Thread watcherThread = new Thread (watcher, "BlockWatcher");
+        watcherThread.setDaemon (true);
+        watcherThread.start();
+    }
+    
+    @Override
+    public synchronized void stop()
+    {
+        if (isMining)
+        {
+            isMining     = false;
+            currentBlock = null;
+            pool.stop();
+            
+            // Stop the foreman and the watcher explicitly.
+            foreman.stopMining();
+            watcher.stopWatching();
+            
+            checkpoints.sync();
+            
+            // The foreman clears the meter and reports 0 H/s on its way out,
+            // which must not land after a quick restart has begun sampling.
+            try
+            {
+                foremanThread.join();
+            }
+            catch (InterruptedException interruption)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    @Override
+    public boolean isMining()
+    {
+        return isMining;
+    }
+    
+    @Override
+    public void setMinerCount (int count)
+    {
+        pool.setMinerCount (count);
+    }
+    
+    @Override
+    public void setBatchSize (int size)
+    {
+        pool.setBatchSize (size);
+    }
+    
+    @Override
+    public void setHashEngine (HashEngine engine)
+    {
+        pool.setEngine (engine);
+    }
+    
+    /**
+     * Sets the time between polls for a new block. A watcher waiting for its
+     * next poll is woken to wait for the new interval instead.
+     * 
+     * @param millis Milliseconds between polls, at least <code>MIN_POLL_INTERVAL</code>.
+     */
+    @Override
+    public synchronized void setPollInterval (long millis)
+    {
+        pollInterval = Math.max (MIN_POLL_INTERVAL, millis);
+        
+        if (watcher != null)
+        {
+            watcher.onPollIntervalChanged();
+        }
+    }
+    
+    public long getPollInterval()
+    {
+        return pollInterval;
+    }
+    
+    @Override
+    public boolean refreshWork()
+    {
+        long   polledAt = System.nanoTime();
+        String block    = Utils.getLastBlock();
+        
+        return block != null && onBlockPolled (block, polledAt, polledAt);
+    }
+    
+    /**
+     * Swaps new work into the miners if the given block, fresh from the krist
+     * server, is not the one they are mining.
+     * 
+     * The target is fetched without holding the engine's lock, so that
+     * <code>start</code> and <code>stop</code> never wait on a slow node.
+     * Whether the work is still wanted is checked again once it has arrived.
+     * 
+     * @param block The last block, according to the poll.
+     * @param previousPollAt When the poll before this one was started, by <code>System.nanoTime</code>.
+     * @param polledAt When this poll was started.
+     * @return Whether or not the work changed.
+     */
+    boolean onBlockPolled (String block, long previousPollAt, long polledAt)
+    {
+        if (!isNewBlock (block, polledAt))
+        {
+            return false;
+        }
+        
+        WorkSwapEvent event = new WorkSwapEvent();
+        event.begin();
+        event.block = block;
+        
+        long target = Utils.getWork();
+        
+        synchronized (this)
+        {
+            // Stopped, or overtaken by another fetch, while waiting for the target.
+            if (!isNewBlock (block, polledAt))
+            {
+                return false;
+            }
+            
+            event.previousBlock = currentBlock;
+            
+            // No target: keep mining the old work until the next poll.
+            if (target < 0)
+            {
+                commit (event, null, 0);
+                return false;
+            }
+            
+            // The first work since starting.
+            if (currentBlock == null)
+            {
+                MiningWork work = newWork (startingNonce, block, target);
+                pool.submit (work);
+                workFetchedAt = polledAt;
+                
+                commit (event, work, 0);
+                return true;
+            }
+            
+            long       staleSince = Math.max (previousPollAt, workFetchedAt);
+            boolean    wasSolved  = currentBlock.equals (solvedBlock);
+            MiningWork work       = newWork (0, block, target);
+            
+            pool.submit (work);
+            workFetchedAt = polledAt;
+            blockChanges++;
+            
+            if (wasSolved)
+            {
+                commit (event, work, 0);
+                return true;
+            }
+            
+            long staleNanos = System.nanoTime() - staleSince;
+            staleWork.record (staleNanos);
+            commit (event, work, staleNanos);
+            
+            System.out.println (String.format ("Block changed. Up to %.1f ms (about %d hashes) went on the old block.", staleNanos / 1e6, hashRate * staleNanos / 1000000000L));
+            return true;
+        }
+    }
+    
+    /**
+     * Ignores polls which were overtaken by a fetch of our own, such as after
+     * solving a block.
+     * 
+     * @return Whether or not the block polled at the given time should become the miners' work.
+     */
+    private synchronized boolean isNewBlock (String block, long polledAt)
+    {
+        return isMining && polledAt >= workFetchedAt && !block.equals (currentBlock);
+    }
+    
+    /**
+     * Records a <code>WorkSwapEvent</code> for the given work, or for keeping
+     * the old work if there is none.
+     */
+    private static void commit (WorkSwapEvent event, MiningWork work, long staleNanos)
+    {
+        if (!event.shouldCommit())
+        {
+            return;
+        }
+        
+        if (work != null)
+        {
+            event.target     = work.getTarget();
+            event.firstNonce = work.getFirstNonce();
+            event.staleWork  = staleNanos;
+            event.isSwapped  = true;
+        }
+        
+        event.commit();
+    }
+    
+    @Override
+    public MiningStats getStats()
+    {
+        return new MiningStats (currentBlock, hashRate, blocksMined, pool.getMinerCount(), pool.getEngine().getName(), pool.getStopLatency(), staleWork,
+                                submitter.getLatency(), submitter.getAccepted(), submitter.getRejected(), submitter.getStale());
+    }
+    
+    @Override
+    public void addListener (MiningEngineListener listener)
+    {
+        listeners.add (listener);
+    }
+    
+    @Override
+    /**
+     * Executed every <code>MinerPool.NONCE_OFFSET</code> nonces without a
+     * solution. The miners carry on, and the <code>BlockWatcher</code> keeps
+     * an eye on the block, so there is nothing left to do.
+     */
+    public void onMineCompletion (ClusterMiner miner)
+    {
+    }
+    
+    @Override
+    /**
+     * Executed when a cluster miner solves the block. The solution goes to
+     * the submitter, and the miner moves on at once. The pool is idle until
+     * the block moves on, @see <code>onSolutionSettled</code>.
+     */
+    public void onBlockSolved (ClusterMiner miner, MiningWork work, long nonce)
+    {
+        solutionsFound.incrementAndGet();
+        solvedBlock = work.getBlock();
+        
+        SolutionFoundEvent event = new SolutionFoundEvent();
+        event.isQueued = submitter.submit (new Solution (work.getMinerID(), work.getBlock(), nonce));
+        
+        if (event.shouldCommit())
+        {
+            event.minerID = work.getMinerID();
+            event.block   = work.getBlock();
+            event.nonce   = nonce;
+            event.commit();
+        }
+    }
+    
+    /**
+     * Called by the submitter once the krist server has answered a solution,
+     * or the block has moved on without it. Work for the next block is
+     * fetched; if the solution was rejected while the block stayed the same,
+     * the miners carry on with the nonces after it.
+     * 
+     * @param solution The solution.
+     * @param outcome What became of it.
+     */
+    void onSolutionSettled (Solution solution, SolutionSubmitter.Outcome outcome)
+    {
+        if (outcome == SolutionSubmitter.Outcome.ACCEPTED)
+        {
+            Utils.invalidateBalance (solution.getMinerID());
+            
+            int mined;
+            synchronized (this)
+            {
+                mined = ++blocksMined;
+            }
+            
+            for (MiningEngineListener listener : listeners)
+            {
+                listener.onBlockMined (solution.getBlock(), solution.getNonce(), mined);
+            }
+        }
+        
+        if (!refreshWork() && outcome == SolutionSubmitter.Outcome.REJECTED)
+        {
+            resumeAfter (solution);
+        }
+    }
+    
+    /**
+     * Hands the miners the rest of the solution's block, after its nonce, if
+     * they are still on that block.
+     */
+    private void resumeAfter (Solution solution)
+    {
+        if (!isMining || !solution.getBlock().equals (currentBlock))
+        {
+            return;
+        }
+        
+        long target = Utils.getWork();
+        if (target < 0)
+        {
+            return;
+        }
+        
+        synchronized (this)
+        {
+            if (isMining && solution.getBlock().equals (currentBlock))
+            {
+                pool.submit (newWork (solution.getNonce() + 1, currentBlock, target));
+            }
+        }
+    }
+    
+    /**
+     * Called by the foreman with the latest hash rate.
+     */
+    void updateHashRate (long hashesPerSecond)
+    {
+        hashRate = hashesPerSecond;
+        
+        for (MiningEngineListener listener : listeners)
+        {
+            listener.onHashRate (hashesPerSecond);
+        }
+    }
+    
+    /**
+     * @return How long the miners may have spent on blocks which had already changed.
+     */
+    public LatencyStats getStaleWork()
+    {
+        return staleWork;
+    }
+    
+    /**
+     * @return The hash rate of the pool and of each miner, over several windows.
+     */
+    public HashRateMeter getHashRateMeter()
+    {
+        return meter;
+    }
+    
+    /**
+     * @return The number of times the miners have been moved on to a new block, not counting the first.
+     */
+    public long getBlockChanges()
+    {
+        return blockChanges;
+    }
+    
+    /**
+     * @return The number of solutions the miners have found, whatever became of them.
+     */
+    public long getSolutionsFound()
+    {
+        return solutionsFound.get();
+    }
+    
+    /**
+     * @return The submitter which sends the miners' solutions.
+     */
+    public SolutionSubmitter getSubmitter()
+    {
+        return submitter;
+    }
+    
+    /**
+     * @return The pool of miners this engine runs.
+     */
+    public MinerPool getPool()
+    {
+        return pool;
+    }
+    
+    /**
+     * Wraps up the given block and target, which have just been fetched, as
+     * work for the miners. If an earlier run, or an earlier start, got part
+     * of the way through the block for this address, the work starts where
+     * it left off. Called with the engine's lock held.
+     * 
+     * @return The work to hand to the pool.
+     */
+    private MiningWork newWork (long startingNonce, String block, long target)
+    {
+        if (midstate == null || !midstate.isFor (minerID, block))
+        {
+            midstate = new Midstate (minerID, block);
+            System.out.println ("Mining block " + block + " with " + midstate.getLayout() + ".");
+        }
+        
+        currentBlock = block;
+        for (MiningEngineListener listener : listeners)
+        {
+            listener.onWorkChanged (block, target);
+        }
+        
+        NonceCheckpoints.Checkpoint checkpoint = checkpoints.checkpoint (minerID, block);
+        long                        firstNonce = midstate.getLayout().getFirstNonce();
+        
+        if (checkpoint.getNonce() > Math.max (startingNonce, firstNonce))
+        {
+            System.out.println ("Resuming block " + block + " from nonce " + checkpoint.getNonce() + ", where mining on it last stopped.");
+        }
+        
+        // Skip straight to the part of the nonce space that hashes fastest
+        // for this prefix.
+        return new MiningWork (midstate, target, Math.max (startingNonce, Math.max (firstNonce, checkpoint.getNonce())), checkpoint);
+    }
+}
@@ -0,0 +1,63 @@
+package krist.miner;
+
+/**
+ * The rate at which a running count grows, over the last few seconds.
+ *
+ * It is fed a sample of the count about once a second, and keeps the last
+ * <code>MAX_WINDOW_SECONDS</code> of them. The rate over a window is worked
+ * out from the first and last samples in it and their own timestamps, so a
+ * late sample does not skew it, and a drop or a spike shows up in the short
+ * windows at once.
+ */
+public final class RateWindow
+{
+    /**
+     * The longest window a rate can be read over.
+     */
+    public static final int MAX_WINDOW_SECONDS = 60;
+    
+    private final long[] counts = new long[MAX_WINDOW_SECONDS + 1];
+    private final long[] times  = new long[MAX_WINDOW_SECONDS + 1];
+    
+    private int latest = -1;
+    private int size;
+    
+    /**
+     * @param count The count now.
+     * @param nanos When it was read, by <code>System.nanoTime</code>.
+     */
+    public synchronized void sample (long count, long nanos)
+    {
+        latest         = (latest + 1) % counts.length;
+        counts[latest] = count;
+        times[latest]  = nanos;
+        size           = Math.min (size + 1, counts.length);
+    }
+    
+    /**
+     * @param seconds The window, from 1 to <code>MAX_WINDOW_SECONDS</code>.
+     * @return The growth per second over the window, or over as much of it as has been sampled. 0 before two samples.
+     */
+    public synchronized double getRate (int seconds)
+    {
+        if (size < 2)
+        {
+            return 0;
+        }
+        
+        int  back     = Math.min (Math.max (1, seconds), size - 1);
+        int  earliest = (latest - back + counts.length) % counts.length;
+        long elapsed  = times[latest] - times[earliest];
+        
+        return elapsed <= 0 ? 0 : (counts[latest] - counts[earliest]) * 1e9 / elapsed;
+    }
+    
+    /**
+     * Forgets every sample.
+     */
+    public synchronized void clear()
+    {
+        latest = -1;
+        size   = 0;
+    }
+}
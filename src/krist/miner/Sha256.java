@@ -0,0 +1,245 @@
+package krist.miner;
+
+/**
+ * A bare SHA-256 compression function which works entirely on caller owned
+ * <code>int</code> and <code>byte</code> arrays.
+ *
+ * Guava's <code>Hashing.sha256()</code> is still the reference implementation
+ * (@see <code>Utils.subSHA256</code>), but it allocates a hasher, a byte array
+ * and a hex string for every call. This class allocates nothing, which is what
+ * the mining loop needs.
+ */
+public final class Sha256
+{
+    /**
+     * The number of bytes consumed by a single compression.
+     */
+    public static final int BLOCK_LENGTH = 64;
+    
+    /**
+     * The number of bytes taken up by the message length at the end of the
+     * padding.
+     */
+    public static final int LENGTH_FIELD = 8;
+    
+    /**
+     * The largest value <code>top48</code> can return.
+     */
+    public static final long MAX_TOP48 = 0xffffffffffffL;
+    
+    /**
+     * The initial hash value, H(0), from FIPS 180-4.
+     */
+    static final int[] IV =
+    {
+        0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a,
+        0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19
+    };
+    
+    /**
+     * The round constants from FIPS 180-4.
+     */
+    static final int[] K =
+    {
+        0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+        0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+        0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+        0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+        0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+        0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+        0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+        0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+    };
+    
+    private Sha256()
+    {
+    }
+    
+    /**
+     * Resets the given state to the SHA-256 initial hash value.
+     *
+     * @param state Eight word hash state to reset.
+     */
+    public static void reset (int[] state)
+    {
+        System.arraycopy (IV, 0, state, 0, IV.length);
+    }
+    
+    /**
+     * Runs one SHA-256 compression over the 64 bytes of <code>data</code>
+     * starting at <code>offset</code>, updating <code>state</code> in place.
+     *
+     * @param state Eight word hash state which is updated in place.
+     * @param schedule Scratch array of at least 64 words for the message schedule.
+     * @param data Array containing the block to compress.
+     * @param offset Offset of the block within <code>data</code>.
+     */
+    public static void compress (int[] state, int[] schedule, byte[] data, int offset)
+    {
+        loadSchedule (schedule, data, offset);
+        
+        int a = state[0], b = state[1], c = state[2], d = state[3];
+        int e = state[4], f = state[5], g = state[6], h = state[7];
+        
+        for (int round = 0; round < 64; round++)
+        {
+            int t1 = h + (Integer.rotateRight (e, 6) ^ Integer.rotateRight (e, 11) ^ Integer.rotateRight (e, 25))
+                       + ((e & f) ^ (~e & g)) + K[round] + schedule[round];
+            int t2 = (Integer.rotateRight (a, 2) ^ Integer.rotateRight (a, 13) ^ Integer.rotateRight (a, 22))
+                       + ((a & b) ^ (a & c) ^ (b & c));
+            
+            h = g;
+            g = f;
+            f = e;
+            e = d + t1;
+            d = c;
+            c = b;
+            b = a;
+            a = t1 + t2;
+        }
+        
+        state[0] += a;
+        state[1] += b;
+        state[2] += c;
+        state[3] += d;
+        state[4] += e;
+        state[5] += f;
+        state[6] += g;
+        state[7] += h;
+    }
+    
+    /**
+     * Runs the last compression of a message, but only as far as is needed to
+     * tell whether the top 48 bits of the digest fall below <code>target</code>.
+     *
+     * The top 48 bits are H0 and the upper half of H1. H1 is fixed once round
+     * 62 is done and H0 by round 63, so the last round skips the rest of the
+     * state, no output word past H1 is produced, and <code>state</code> is
+     * left untouched. If H0 alone decides the comparison, H1 is never looked
+     * at.
+     *
+     * @param state Eight word hash state before the final block. It is not modified.
+     * @param schedule Scratch array of at least 64 words for the message schedule.
+     * @param data Array containing the final, padded block.
+     * @param offset Offset of the block within <code>data</code>.
+     * @param target The target which the top 48 bits must fall below.
+     * @return Whether or not the digest's top 48 bits are below the target.
+     */
+    public static boolean finishBelow (int[] state, int[] schedule, byte[] data, int offset, long target)
+    {
+        if (target <= 0)
+        {
+            return false;
+        }
+        else if (target > MAX_TOP48)
+        {
+            return true;
+        }
+        
+        loadSchedule (schedule, data, offset);
+        
+        int a = state[0], b = state[1], c = state[2], d = state[3];
+        int e = state[4], f = state[5], g = state[6], h = state[7];
+        
+        for (int round = 0; round < 63; round++)
+        {
+            int t1 = h + (Integer.rotateRight (e, 6) ^ Integer.rotateRight (e, 11) ^ Integer.rotateRight (e, 25))
+                       + ((e & f) ^ (~e & g)) + K[round] + schedule[round];
+            int t2 = (Integer.rotateRight (a, 2) ^ Integer.rotateRight (a, 13) ^ Integer.rotateRight (a, 22))
+                       + ((a & b) ^ (a & c) ^ (b & c));
+            
+            h = g;
+            g = f;
+            f = e;
+            e = d + t1;
+            d = c;
+            c = b;
+            b = a;
+            a = t1 + t2;
+        }
+        
+        // Round 63 only needs to produce the new 'a', which becomes H0.
+        int t1 = h + (Integer.rotateRight (e, 6) ^ Integer.rotateRight (e, 11) ^ Integer.rotateRight (e, 25))
+                   + ((e & f) ^ (~e & g)) + K[63] + schedule[63];
+        int t2 = (Integer.rotateRight (a, 2) ^ Integer.rotateRight (a, 13) ^ Integer.rotateRight (a, 22))
+                   + ((a & b) ^ (a & c) ^ (b & c));
+        int h0 = state[0] + t1 + t2;
+        
+        int comparison = Integer.compareUnsigned (h0, (int) (target >>> 16));
+        if (comparison != 0)
+        {
+            return comparison < 0;
+        }
+        
+        // The 'a' from round 62 becomes 'b', and so H1.
+        return top48 (h0, state[1] + a) < target;
+    }
+    
+    /**
+     * Reads the 16 big-endian words of the block into the schedule and
+     * expands them to the full 64 words.
+     */
+    static void loadSchedule (int[] schedule, byte[] data, int offset)
+    {
+        for (int word = 0; word < 16; word++, offset += 4)
+        {
+            schedule[word] = (data[offset] << 24) | ((data[offset + 1] & 0xff) << 16)
+                           | ((data[offset + 2] & 0xff) << 8) | (data[offset + 3] & 0xff);
+        }
+        
+        for (int word = 16; word < 64; word++)
+        {
+            int w15 = schedule[word - 15];
+            int w2  = schedule[word - 2];
+            
+            schedule[word] = schedule[word - 16] + schedule[word - 7]
+                           + (Integer.rotateRight (w15, 7) ^ Integer.rotateRight (w15, 18) ^ (w15 >>> 3))
+                           + (Integer.rotateRight (w2, 17) ^ Integer.rotateRight (w2, 19) ^ (w2 >>> 10));
+        }
+    }
+    
+    /**
+     * Writes the SHA-256 padding for a message of <code>messageLength</code>
+     * total bytes into <code>data</code>, starting at <code>offset</code>,
+     * which is where the message bytes held in <code>data</code> end.
+     *
+     * Index 0 of <code>data</code> must fall on a block boundary of the
+     * message.
+     *
+     * @param data Array holding the end of the message.
+     * @param offset Index directly after the last message byte in <code>data</code>.
+     * @param messageLength Total length of the message in bytes, including any bytes already compressed.
+     * @return Index directly after the padding, a multiple of <code>BLOCK_LENGTH</code>.
+     */
+    public static int pad (byte[] data, int offset, long messageLength)
+    {
+        data[offset++] = (byte) 0x80;
+        
+        while (offset % BLOCK_LENGTH != BLOCK_LENGTH - LENGTH_FIELD)
+        {
+            data[offset++] = 0;
+        }
+        
+        long bitLength = messageLength << 3;
+        for (int shift = 56; shift >= 0; shift -= 8)
+        {
+            data[offset++] = (byte) (bitLength >>> shift);
+        }
+        
+        return offset;
+    }
+    
+    /**
+     * Combines the first two words of a digest into the 48 bit value which is
+     * compared against krist's target. This is the same as parsing the first
+     * 12 hexadecimal characters of the digest.
+     *
+     * @param h0 First word of the digest.
+     * @param h1 Second word of the digest.
+     * @return The top 48 bits of the digest as a non-negative long.
+     */
+    public static long top48 (int h0, int h1)
+    {
+        return ((h0 & 0xffffffffL) << 16) | (h1 >>> 16);
+    }
+}
@@ -0,0 +1,63 @@
+package krist.miner;
+
+/**
+ * A nonce which solves a block for an address, on its way to the krist
+ * server. @see <code>SolutionSubmitter</code>.
+ */
+public final class Solution
+{
+    private final String minerID;
+    private final String block;
+    private final long   nonce;
+    private final long   foundAt;
+    
+    /**
+     * @param minerID Krist address the solution was mined for.
+     * @param block The block it solves.
+     * @param nonce The nonce which solves it.
+     */
+    public Solution (String minerID, String block, long nonce)
+    {
+        this.minerID = minerID;
+        this.block   = block;
+        this.nonce   = nonce;
+        this.foundAt = System.nanoTime();
+    }
+    
+    public String getMinerID()
+    {
+        return minerID;
+    }
+    
+    public String getBlock()
+    {
+        return block;
+    }
+    
+    public long getNonce()
+    {
+        return nonce;
+    }
+    
+    /**
+     * @return When the solution was found, or recovered from the journal, by <code>System.nanoTime</code>.
+     */
+    public long getFoundAt()
+    {
+        return foundAt;
+    }
+    
+    /**
+     * @return What duplicates are recognised by: the block and the nonce.
+     */
+    public String getKey()
+    {
+        return block + ":" + nonce;
+    }
+    
+    @Override
+    public String toString()
+    {
+        return "nonce " + nonce + " for block " + block;
+    }
+}
@@ -0,0 +1,33 @@
+package krist.miner;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A miner finding a nonce which solves the block, @see
+ * <code>PoolMiningEngine.onBlockSolved</code>.
+ */
+@Name ("krist.miner.SolutionFound")
+@Label ("Solution Found")
+@Category ({ "Krist Miner", "Solutions" })
+@Description ("A miner found a nonce which solves the block.")
+@StackTrace (false)
+final class SolutionFoundEvent extends Event
+{
+    @Label ("Address")
+    String minerID;
+    
+    @Label ("Block")
+    String block;
+    
+    @Label ("Nonce")
+    long nonce;
+    
+    @Label ("Queued")
+    @Description ("False for a duplicate, or if the submission queue was full.")
+    boolean isQueued;
+}
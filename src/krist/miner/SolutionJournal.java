@@ -0,0 +1,174 @@
+package krist.miner;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * An append-only log of found solutions and what became of them, so that a
+ * solution found just before a crash is still submitted on the next run.
+ *
+ * Each line is either <code>found &lt;address&gt; &lt;block&gt; &lt;nonce&gt;</code>,
+ * written as soon as a miner finds the solution, or
+ * <code>settled &lt;block&gt; &lt;nonce&gt; &lt;outcome&gt;</code>, written once the
+ * krist server has answered or the block has moved on. Opening the journal
+ * reads back the solutions which were found but never settled, for
+ * <code>recover</code>, and rewrites the journal with just those, so that it
+ * does not grow from run to run.
+ *
+ * Found lines are written straight to the operating system, which keeps
+ * them if the JVM dies, without waiting for the disk: that happens on the
+ * solving miner's thread. <code>sync</code> forces them to the disk, and is
+ * left to the sender.
+ */
+public final class SolutionJournal
+{
+    /**
+     * The journal file, next to the configuration file.
+     */
+    public static final String JOURNAL_FILE_PATH = "solutions.journal";
+    
+    private final File           file;
+    private final List<Solution> recovered;
+    private FileChannel          channel;
+    
+    /**
+     * Opens the journal, so that solutions can be recorded at once.
+     */
+    public SolutionJournal (String path)
+    {
+        this.file      = new File (path);
+        this.recovered = open();
+    }
+    
+    /**
+     * @return The solutions which were found but never settled before the journal was opened, in the order they were found.
+     */
+    public List<Solution> recover()
+    {
+        return new ArrayList<> (recovered);
+    }
+    
+    /**
+     * Reads back the solutions which were found but never settled, and starts
+     * the journal afresh with only those.
+     *
+     * @return The unsettled solutions, in the order they were found.
+     */
+    private List<Solution> open()
+    {
+        LinkedHashMap<String, Solution> unsettled = new LinkedHashMap<>();
+        
+        if (file.isFile())
+        {
+            try (BufferedReader reader = new BufferedReader (new FileReader (file)))
+            {
+                String line;
+                while ((line = reader.readLine()) != null)
+                {
+                    String[] fields = line.trim().split (" ");
+                    
+                    try
+                    {
+                        if (fields[0].equals ("found") && fields.length == 4)
+                        {
+                            Solution solution = new Solution (fields[1], fields[2], Long.parseLong (fields[3]));
+                            unsettled.put (solution.getKey(), solution);
+                        }
+                        else if (fields[0].equals ("settled") && fields.length >= 3)
+                        {
+                            unsettled.remove (fields[1] + ":" + Long.parseLong (fields[2]));
+                        }
+                    }
+                    catch (NumberFormatException corruptLine)
+                    {
+                        // Most likely a line cut short by a crash.
+                    }
+                }
+            }
+            catch (IOException failureReport)
+            {
+                System.out.println ("Failed to read the solution journal: " + failureReport.getMessage());
+            }
+        }
+        
+        try
+        {
+            channel = FileChannel.open (file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            for (Solution solution : unsettled.values())
+            {
+                recordFound (solution);
+            }
+            
+            sync();
+        }
+        catch (IOException failureReport)
+        {
+            System.out.println ("Failed to open the solution journal: " + failureReport.getMessage() + ". Solutions will not survive a crash.");
+        }
+        
+        return new ArrayList<> (unsettled.values());
+    }
+    
+    public synchronized void recordFound (Solution solution)
+    {
+        append ("found " + solution.getMinerID() + " " + solution.getBlock() + " " + solution.getNonce());
+    }
+    
+    /**
+     * @param outcome What became of the solution, in a word.
+     */
+    public synchronized void recordSettled (Solution solution, String outcome)
+    {
+        append ("settled " + solution.getBlock() + " " + solution.getNonce() + " " + outcome);
+    }
+    
+    /**
+     * Forces everything recorded so far to the disk.
+     */
+    public synchronized void sync()
+    {
+        if (channel == null)
+        {
+            return;
+        }
+        
+        try
+        {
+            channel.force (false);
+        }
+        catch (IOException failureReport)
+        {
+            System.out.println ("Failed to sync the solution journal: " + failureReport.getMessage());
+        }
+    }
+    
+    private void append (String line)
+    {
+        if (channel == null)
+        {
+            return;
+        }
+        
+        try
+        {
+            ByteBuffer bytes = ByteBuffer.wrap ((line + "\n").getBytes (StandardCharsets.US_ASCII));
+            while (bytes.hasRemaining())
+            {
+                channel.write (bytes);
+            }
+        }
+        catch (IOException failureReport)
+        {
+            System.out.println ("Failed to write to the solution journal: " + failureReport.getMessage());
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package krist.miner;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The submitter sending a solution, from its first attempt until it settled,
+ * @see <code>SolutionSubmitter.send</code>.
+ */
+@Name ("krist.miner.SolutionSubmitted")
+@Label ("Solution Submitted")
+@Category ({ "Krist Miner", "Solutions" })
+@Description ("A solution sent to the krist server, retries included, until it settled.")
+@StackTrace (false)
+final class SolutionSubmittedEvent extends Event
+{
+    @Label ("Address")
+    String minerID;
+    
+    @Label ("Block")
+    String block;
+    
+    @Label ("Nonce")
+    long nonce;
+    
+    @Label ("Attempts")
+    int attempts;
+    
+    @Label ("Outcome")
+    @Description ("accepted, rejected or stale.")
+    String outcome;
+    
+    @Label ("Since Found")
+    @Description ("The time from finding the solution until it settled.")
+    @Timespan (Timespan.NANOSECONDS)
+    long sinceFound;
+}
@@ -0,0 +1,340 @@
+package krist.miner;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends found solutions to the krist server on its own thread, so that the
+ * miner which found one can hand it over and move on at once.
+ *
+ * Solutions wait in a bounded queue of <code>QUEUE_CAPACITY</code>. Each one
+ * is written to a <code>SolutionJournal</code> before it is queued, and
+ * solutions left unsettled by an earlier run are queued again when the
+ * sender starts. A solution already seen, by block and nonce, is ignored.
+ * A recovered solution is only sent if its block is still the server's last
+ * one; otherwise it is stale, and the server would reject it as a wrong
+ * answer to the current block.
+ *
+ * If the server does not answer, the submission is retried after a
+ * <code>Backoff</code> delay for as long as the server's last block is still
+ * the solved one; once the block has moved on, the solution is stale and is
+ * dropped. Every solution settles as one of the <code>Outcome</code>s, which
+ * are counted, along with the time from finding a solution to the server's
+ * answer, and reported to <code>PoolMiningEngine.onSolutionSettled</code>.
+ */
+public class SolutionSubmitter implements Runnable
+{
+    /**
+     * What became of a solution.
+     */
+    public enum Outcome
+    {
+        /**
+         * The server accepted it: the block is ours.
+         */
+        ACCEPTED,
+        
+        /**
+         * The server answered with anything else.
+         */
+        REJECTED,
+        
+        /**
+         * The block moved on before the server could be told.
+         */
+        STALE
+    }
+    
+    /**
+     * The most solutions which may wait to be sent.
+     */
+    public static final int QUEUE_CAPACITY = 64;
+    
+    /**
+     * The server's answer to an accepted solution.
+     */
+    public static final String ACCEPTED_ANSWER = "Block solved";
+    
+    /**
+     * How many recent solutions are remembered to recognise duplicates.
+     */
+    private static final int REMEMBERED_SOLUTIONS = 1024;
+    
+    private final PoolMiningEngine        engine;
+    private final SolutionJournal         journal;
+    private final BlockingQueue<Solution> queue   = new ArrayBlockingQueue<> (QUEUE_CAPACITY);
+    private final Backoff                 backoff = new Backoff (500, 30000);
+    private final LatencyStats            latency = new LatencyStats();
+    
+    private final AtomicLong sent     = new AtomicLong();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong stale    = new AtomicLong();
+    private final AtomicLong dropped  = new AtomicLong();
+    
+    /**
+     * The keys of the solutions seen lately, @see <code>Solution.getKey</code>.
+     */
+    private final Set<String> seen = Collections.newSetFromMap (new LinkedHashMap<String, Boolean>()
+    {
+        @Override
+        protected boolean removeEldestEntry (Map.Entry<String, Boolean> eldest)
+        {
+            return size() > REMEMBERED_SOLUTIONS;
+        }
+    });
+    
+    /**
+     * The keys of the solutions recovered from the journal which have not been sent yet.
+     */
+    private final Set<String> recovered = ConcurrentHashMap.newKeySet();
+    
+    private Thread sender;
+    
+    /**
+     * @param engine The engine to report settled solutions to.
+     * @param journal The journal to keep solutions in until they settle.
+     */
+    public SolutionSubmitter (PoolMiningEngine engine, SolutionJournal journal)
+    {
+        this.engine  = engine;
+        this.journal = journal;
+    }
+    
+    /**
+     * Starts the sender, unless it is running already. It first queues the
+     * solutions the journal has left over.
+     */
+    public synchronized void startSending()
+    {
+        if (sender != null)
+        {
+            return;
+        }
+        
+        for (Solution solution : journal.recover())
+        {
+            System.out.println ("Recovered unsent " + solution + " from the journal.");
+            
+            recovered.add (solution.getKey());
+            enqueue (solution);
+        }
+        
+        sender = new Thread (this, "SolutionSubmitter");
+        sender.setDaemon (true);
+        sender.start();
+    }
+    
+    /**
+     * Journals and queues a solution, without waiting for anything but the
+     * journal write.
+     *
+     * @param solution The solution to send.
+     * @return Whether or not it was queued: false for a duplicate, or if the queue is full.
+     */
+    public boolean submit (Solution solution)
+    {
+        synchronized (seen)
+        {
+            if (!seen.add (solution.getKey()))
+            {
+                return false;
+            }
+        }
+        
+        journal.recordFound (solution);
+        return enqueue (solution);
+    }
+    
+    private boolean enqueue (Solution solution)
+    {
+        synchronized (seen)
+        {
+            seen.add (solution.getKey());
+        }
+        
+        if (queue.offer (solution))
+        {
+            return true;
+        }
+        
+        // It stays in the journal, to be tried again on the next run.
+        dropped.incrementAndGet();
+        System.out.println ("The submission queue is full. Keeping " + solution + " in the journal for later.");
+        
+        return false;
+    }
+    
+    @Override
+    public void run()
+    {
+        while (true)
+        {
+            Solution solution;
+            try
+            {
+                solution = queue.take();
+            }
+            catch (InterruptedException interruption)
+            {
+                return;
+            }
+            
+            journal.sync();
+            
+            SolutionSubmittedEvent event = new SolutionSubmittedEvent();
+            event.begin();
+            
+            // This is the only thread which sends, so the difference is this solution's attempts.
+            long    sentBefore = sent.get();
+            Outcome outcome    = send (solution);
+            
+            if (outcome == null)
+            {
+                return;
+            }
+            
+            if (event.shouldCommit())
+            {
+                event.minerID    = solution.getMinerID();
+                event.block      = solution.getBlock();
+                event.nonce      = solution.getNonce();
+                event.attempts   = (int) (sent.get() - sentBefore);
+                event.outcome    = outcome.name().toLowerCase();
+                event.sinceFound = System.nanoTime() - solution.getFoundAt();
+                event.commit();
+            }
+            
+            journal.recordSettled (solution, outcome.name().toLowerCase());
+            engine.onSolutionSettled (solution, outcome);
+        }
+    }
+    
+    /**
+     * Submits the solution until the server answers or the block moves on.
+     *
+     * @return What became of it, or null if the sender was interrupted.
+     */
+    private Outcome send (Solution solution)
+    {
+        // Left over from an earlier run, so its block has likely moved on since.
+        if (recovered.remove (solution.getKey()))
+        {
+            String lastBlock = Utils.getLastBlock();
+            if (lastBlock != null && !lastBlock.equals (solution.getBlock()))
+            {
+                return settleStale (solution, lastBlock);
+            }
+        }
+        
+        while (true)
+        {
+            sent.incrementAndGet();
+            
+            String answer = Utils.submitSolution (solution.getMinerID(), solution.getNonce());
+            if (answer != null)
+            {
+                backoff.reset();
+                latency.record (System.nanoTime() - solution.getFoundAt());
+                
+                if (answer.equals (ACCEPTED_ANSWER))
+                {
+                    accepted.incrementAndGet();
+                    return Outcome.ACCEPTED;
+                }
+                
+                rejected.incrementAndGet();
+                System.out.println ("The krist server rejected " + solution + ": '" + answer + "'.");
+                
+                return Outcome.REJECTED;
+            }
+            
+            long delay = backoff.nextDelay();
+            System.out.println ("Could not submit " + solution + ". Trying again in " + delay + " ms.");
+            
+            try
+            {
+                Thread.sleep (delay);
+            }
+            catch (InterruptedException interruption)
+            {
+                return null;
+            }
+            
+            // Only worth another try while nobody else has solved the block.
+            String lastBlock = Utils.getLastBlock();
+            if (lastBlock != null && !lastBlock.equals (solution.getBlock()))
+            {
+                return settleStale (solution, lastBlock);
+            }
+        }
+    }
+    
+    private Outcome settleStale (Solution solution, String lastBlock)
+    {
+        stale.incrementAndGet();
+        System.out.println ("Dropping " + solution + ": the block has moved on to " + lastBlock + ".");
+        
+        return Outcome.STALE;
+    }
+    
+    /**
+     * @return The time from finding each solution to the server's answer to it.
+     */
+    public LatencyStats getLatency()
+    {
+        return latency;
+    }
+    
+    /**
+     * @return The number of submissions sent to the krist server, retries included.
+     */
+    public long getSent()
+    {
+        return sent.get();
+    }
+    
+    public long getAccepted()
+    {
+        return accepted.get();
+    }
+    
+    public long getRejected()
+    {
+        return rejected.get();
+    }
+    
+    public long getStale()
+    {
+        return stale.get();
+    }
+    
+    /**
+     * @return The number of solutions turned away by a full queue.
+     */
+    public long getDropped()
+    {
+        return dropped.get();
+    }
+    
+    /**
+     * @return The number of solutions waiting to be sent.
+     */
+    public int getQueued()
+    {
+        return queue.size();
+    }
+    
+    @Override
+    public String toString()
+    {
+        return accepted + " accepted, " + rejected + " rejected, " + stale + " stale, " + dropped + " dropped, "
+             + queue.size() + " queued, latency " + latency;
+    }
+}
@@ -0,0 +1,56 @@
+package krist.miner;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * How quickly the program gets going: the time from the JVM starting to the
+ * first nonce being hashed, and how long finding the sync node took.
+ */
+public final class StartupMetrics
+{
+    private static final AtomicBoolean hasHashed = new AtomicBoolean();
+    
+    private static volatile long timeToFirstHash  = -1;
+    private static volatile long nodeResolveNanos = -1;
+    
+    private StartupMetrics()
+    {
+    }
+    
+    /**
+     * Called by the miners as they start hashing. Only the first call counts.
+     */
+    static void markFirstHash()
+    {
+        if (!hasHashed.get() && hasHashed.compareAndSet (false, true))
+        {
+            timeToFirstHash = ManagementFactory.getRuntimeMXBean().getUptime();
+            System.out.println ("Time to first hash: " + timeToFirstHash + " ms.");
+        }
+    }
+    
+    /**
+     * Called by <code>SyncNode</code> when a lookup succeeds.
+     */
+    static void markNodeResolved (long nanos)
+    {
+        nodeResolveNanos = nanos;
+    }
+    
+    /**
+     * @return Milliseconds from the JVM starting to the first hash, or -1 if nothing has been hashed yet.
+     */
+    public static long getTimeToFirstHash()
+    {
+        return timeToFirstHash;
+    }
+    
+    /**
+     * @return Milliseconds the last sync node lookup took, or -1 if none has succeeded.
+     */
+    public static double getNodeResolveMillis()
+    {
+        return nodeResolveNanos < 0 ? -1 : nodeResolveNanos / 1e6;
+    }
+}
@@ -0,0 +1,536 @@
+package krist.miner;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Finds the krist sync nodes to talk to, without holding up startup, and
+ * picks the one each query goes to.
+ *
+ * The candidates are the nodes listed in the <code>syncNodes</code> field of
+ * the configuration file or, if there are none, those in the kristwallet
+ * static API on GitHub. Nodes from the static API are cached on disk, in
+ * <code>CACHE_FILE_PATH</code>, so later runs can use them straight away:
+ * cached nodes are trusted immediately, and checked in the background. If
+ * they have outlived <code>CACHE_TTL_MILLIS</code>, or none of them answers,
+ * the static API is asked again.
+ *
+ * Once the nodes are known, each of them is probed every
+ * <code>PROBE_INTERVAL_MILLIS</code>, and queries go to the fastest healthy
+ * one, @see <code>pick</code>. A node which fails is left at once for the
+ * next best, but a healthy node is only left for one which is faster by
+ * <code>SWITCH_RATIO</code>, so that nodes with similar latencies are not
+ * flipped between on every probe. Every switch is logged along with the
+ * latencies behind it, and <code>describeNodes</code> reports every node.
+ *
+ * Nothing touches the network until <code>resolveInBackground</code> or
+ * <code>pick</code> is first called.
+ */
+public final class SyncNode
+{
+    /**
+     * The page listing the sync nodes, one per line.
+     */
+    public static final String STATIC_API_URL = "https://raw.githubusercontent.com/BTCTaras/kristwallet/master/staticapi/syncNode";
+    
+    /**
+     * How long cached nodes are trusted before the static API is asked again.
+     */
+    public static final long CACHE_TTL_MILLIS = 6 * 60 * 60 * 1000L;
+    
+    /**
+     * How often every node's latency is measured.
+     */
+    public static final long PROBE_INTERVAL_MILLIS = 10000;
+    
+    /**
+     * How much of the current node's median latency another healthy node
+     * must beat before queries move to it.
+     */
+    private static final double SWITCH_RATIO = 0.8;
+    
+    /**
+     * The query probes time: the cheapest one krist has.
+     */
+    private static final String PROBE_QUERY = "lastblock";
+    
+    /**
+     * The cache file: the nodes' addresses on the first line, separated by
+     * commas, and when they were looked up, in milliseconds since the epoch,
+     * on the second.
+     */
+    private static final String CACHE_FILE_PATH = "syncnode.cache";
+    
+    /**
+     * The candidates, in the order they were listed; empty until some are known.
+     */
+    private static volatile List<KristNode> nodes = Collections.emptyList();
+    
+    /**
+     * The node queries go to while it stays healthy; null until the first query.
+     */
+    private static volatile KristNode current;
+    
+    private static CompletableFuture<List<KristNode>> resolution;
+    private static Thread                             prober;
+    
+    private SyncNode()
+    {
+    }
+    
+    /**
+     * Picks the node to send a query to: the current node while it is
+     * healthy, or else the fastest healthy node. If none is healthy, it is
+     * the fastest whose breaker lets a trial request through. If no node is
+     * known yet, this waits for the lookup.
+     *
+     * The caller must report the outcome to <code>KristNode.recordOutcome</code>.
+     *
+     * @param exclude A node which has just failed this query, to fail over from; or null.
+     * @return The node to ask, or null if there is none which may be asked right now.
+     */
+    public static KristNode pick (KristNode exclude)
+    {
+        KristNode chosen = current;
+        if (chosen != null && chosen != exclude && chosen.isHealthy())
+        {
+            return chosen;
+        }
+        
+        List<KristNode> ranked = rank (getNodes());
+        for (KristNode node : ranked)
+        {
+            if (node != exclude && node.isHealthy())
+            {
+                // A retry is a one-off; the next query moves over for good.
+                if (exclude == null)
+                {
+                    switchTo (node, chosen == null ? null : chosen.getAddress() + " is failing");
+                }
+                
+                return node;
+            }
+        }
+        
+        for (KristNode node : ranked)
+        {
+            if (node != exclude && node.getBreaker().allowRequest())
+            {
+                return node;
+            }
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Returns the candidate nodes. If none is known yet, this waits for the
+     * lookup.
+     *
+     * @return The nodes in the order they were listed, or an empty list if none could be found.
+     */
+    public static List<KristNode> getNodes()
+    {
+        List<KristNode> known = nodes;
+        if (!known.isEmpty())
+        {
+            return known;
+        }
+        
+        try
+        {
+            return resolveInBackground().join();
+        }
+        catch (CompletionException lookupFailure)
+        {
+            System.out.println ("Failed to find a krist sync node: " + lookupFailure.getCause());
+            return Collections.emptyList();
+        }
+    }
+    
+    /**
+     * @return The candidate nodes known so far, without waiting for the lookup. Empty until it is done.
+     */
+    public static List<KristNode> getKnownNodes()
+    {
+        return nodes;
+    }
+    
+    /**
+     * @return The node queries currently go to, or null if none has been picked yet.
+     */
+    public static KristNode getCurrentNode()
+    {
+        return current;
+    }
+    
+    /**
+     * @return One line per node, with its health and probe latencies. The node in use is marked with a '*'.
+     */
+    public static String describeNodes()
+    {
+        StringBuilder description = new StringBuilder();
+        KristNode     chosen      = current;
+        
+        for (KristNode node : nodes)
+        {
+            if (description.length() > 0)
+            {
+                description.append ('\n');
+            }
+            
+            description.append (node == chosen ? "* " : "  ").append (node);
+        }
+        
+        return description.toString();
+    }
+    
+    /**
+     * Starts looking up the nodes, unless a lookup is already under way or
+     * has succeeded. Nodes from the cache can be used at once, while the
+     * lookup checks on them. Once the lookup succeeds, the nodes are probed
+     * in the background from then on.
+     *
+     * @return The nodes, to come.
+     */
+    public static synchronized CompletableFuture<List<KristNode>> resolveInBackground()
+    {
+        if (resolution != null && !resolution.isCompletedExceptionally())
+        {
+            return resolution;
+        }
+        
+        final long   startedAt  = System.nanoTime();
+        List<String> configured = Utils.getConfiguredSyncNodes();
+        
+        if (!configured.isEmpty())
+        {
+            resolution = CompletableFuture.completedFuture (use (configured));
+        }
+        else
+        {
+            String[] cached = readCache();
+            
+            if (cached != null && nodes.isEmpty())
+            {
+                use (parseAddresses (cached[0]));
+            }
+            
+            if (cached != null && System.currentTimeMillis() - Long.parseLong (cached[1]) < CACHE_TTL_MILLIS)
+            {
+                // Fresh enough: make sure that one of them still answers.
+                final List<KristNode> cachedNodes = nodes;
+                resolution = probe (cachedNodes).thenCompose (answered -> answered > 0 ? CompletableFuture.completedFuture (cachedNodes) : askStaticAPI());
+            }
+            else
+            {
+                resolution = askStaticAPI();
+            }
+        }
+        
+        resolution.thenAccept (found ->
+        {
+            StartupMetrics.markNodeResolved (System.nanoTime() - startedAt);
+            startProbing();
+        });
+        
+        return resolution;
+    }
+    
+    /**
+     * Times a probe query to each of the given nodes at once. A node whose
+     * breaker is open is only probed once it lets a trial through.
+     *
+     * @param candidates The nodes to probe.
+     * @return The number of nodes which answered, to come. It never completes exceptionally.
+     */
+    static CompletableFuture<Integer> probe (List<KristNode> candidates)
+    {
+        ArrayList<CompletableFuture<Boolean>> probes = new ArrayList<>();
+        
+        for (KristNode node : candidates)
+        {
+            if (!node.getBreaker().allowRequest())
+            {
+                continue;
+            }
+            
+            final long sentAt = System.nanoTime();
+            probes.add (HttpTransport.getAsync (node.getLink() + PROBE_QUERY, HttpTransport.WORK_TIMEOUT).handle ((body, failure) ->
+            {
+                if (failure == null)
+                {
+                    node.recordProbe (System.nanoTime() - sentAt);
+                }
+                
+                node.recordOutcome (failure == null);
+                return failure == null;
+            }));
+        }
+        
+        return CompletableFuture.allOf (probes.toArray (new CompletableFuture<?>[0])).thenApply (done ->
+        {
+            int answered = 0;
+            for (CompletableFuture<Boolean> answer : probes)
+            {
+                if (answer.join())
+                {
+                    answered++;
+                }
+            }
+            
+            return answered;
+        });
+    }
+    
+    /**
+     * Probes every node once, then moves queries to the fastest healthy node
+     * if the current one is failing or is clearly slower. The prober does
+     * this every <code>PROBE_INTERVAL_MILLIS</code>.
+     */
+    static void probeNow()
+    {
+        probe (nodes).join();
+        rerank();
+    }
+    
+    /**
+     * Forgets everything known about the nodes, and stops probing them. For
+     * tests, which then probe with <code>probeNow</code>.
+     *
+     * @param addresses The new candidates, used as they are, without the
+     *        configuration file or the cache; or null to have the next query
+     *        look the nodes up again.
+     */
+    static synchronized void reset (List<String> addresses)
+    {
+        if (prober != null)
+        {
+            prober.interrupt();
+            prober = null;
+        }
+        
+        nodes      = Collections.emptyList();
+        current    = null;
+        resolution = addresses == null ? null : CompletableFuture.completedFuture (use (addresses));
+    }
+    
+    /**
+     * Moves queries to the fastest healthy node, if the current one is
+     * failing or is clearly slower.
+     */
+    private static void rerank()
+    {
+        KristNode chosen = current;
+        
+        for (KristNode node : rank (nodes))
+        {
+            if (!node.isHealthy())
+            {
+                continue;
+            }
+            
+            if (chosen == null || !chosen.isHealthy())
+            {
+                switchTo (node, chosen == null ? null : chosen.getAddress() + " is failing");
+            }
+            else if (node != chosen && node.getMedianMillis() < chosen.getMedianMillis() * SWITCH_RATIO)
+            {
+                switchTo (node, String.format ("%.1f times as fast as %s", chosen.getMedianMillis() / node.getMedianMillis(), chosen));
+            }
+            
+            return;
+        }
+    }
+    
+    /**
+     * @return The given nodes, fastest first. Nodes which have not been probed come last, in the order they were listed.
+     */
+    private static List<KristNode> rank (List<KristNode> candidates)
+    {
+        ArrayList<KristNode> ranked = new ArrayList<> (candidates);
+        ranked.sort (Comparator.comparingDouble (KristNode::getMedianMillis));
+        
+        return ranked;
+    }
+    
+    /**
+     * @param reason Why, for the log; null for the first node picked.
+     */
+    private static synchronized void switchTo (KristNode node, String reason)
+    {
+        KristNode previous = current;
+        if (node == previous)
+        {
+            return;
+        }
+        
+        current = node;
+        System.out.println (reason == null ? "Using krist node " + node + "." : "Switched to krist node " + node + ": " + reason + ".");
+    }
+    
+    /**
+     * Makes the given addresses the candidates, keeping what is known about
+     * the ones which were candidates already.
+     *
+     * @return The new candidates.
+     */
+    private static synchronized List<KristNode> use (List<String> addresses)
+    {
+        ArrayList<KristNode> found = new ArrayList<>();
+        
+        for (String address : addresses)
+        {
+            KristNode node = null;
+            for (KristNode known : nodes)
+            {
+                if (known.getAddress().equals (address))
+                {
+                    node = known;
+                }
+            }
+            
+            found.add (node == null ? new KristNode (address) : node);
+        }
+        
+        nodes = Collections.unmodifiableList (found);
+        if (!found.contains (current))
+        {
+            current = null;
+        }
+        
+        return nodes;
+    }
+    
+    /**
+     * Probes every node now and then every <code>PROBE_INTERVAL_MILLIS</code>
+     * on a daemon thread, unless that has been started already.
+     */
+    private static synchronized void startProbing()
+    {
+        if (prober != null)
+        {
+            return;
+        }
+        
+        prober = new Thread (() ->
+        {
+            while (true)
+            {
+                probeNow();
+                
+                try
+                {
+                    Thread.sleep (PROBE_INTERVAL_MILLIS);
+                }
+                catch (InterruptedException sleepFailure)
+                {
+                    return;
+                }
+            }
+        }, "Krist node prober");
+        
+        prober.setDaemon (true);
+        prober.start();
+    }
+    
+    /**
+     * Looks the nodes up in the static API, then uses and caches them.
+     */
+    private static CompletableFuture<List<KristNode>> askStaticAPI()
+    {
+        return HttpTransport.getAsync (STATIC_API_URL, HttpTransport.STATIC_API_TIMEOUT).thenApply (page ->
+        {
+            List<String> addresses = parseAddresses (page);
+            if (addresses.isEmpty())
+            {
+                throw new IllegalStateException ("The static API lists no sync node.");
+            }
+            
+            writeCache (addresses);
+            return use (addresses);
+        });
+    }
+    
+    /**
+     * Reads node addresses separated by commas or whitespace, such as lines.
+     * A trailing '?' is dropped from each.
+     *
+     * @param text The addresses.
+     * @return The addresses, in order, without duplicates.
+     */
+    static List<String> parseAddresses (String text)
+    {
+        ArrayList<String> addresses = new ArrayList<>();
+        
+        for (String address : text.split ("[,\\s]+"))
+        {
+            if (address.endsWith ("?"))
+            {
+                address = address.substring (0, address.length() - 1);
+            }
+            
+            if (!address.isEmpty() && !addresses.contains (address))
+            {
+                addresses.add (address);
+            }
+        }
+        
+        return addresses;
+    }
+    
+    /**
+     * @return The cached addresses and the time they were cached, or null if there is no usable cache.
+     */
+    private static String[] readCache()
+    {
+        File cacheFile = new File (CACHE_FILE_PATH);
+        if (!cacheFile.isFile())
+        {
+            return null;
+        }
+        
+        try (BufferedReader reader = new BufferedReader (new FileReader (cacheFile)))
+        {
+            String cachedNodes = reader.readLine();
+            String cachedAt    = reader.readLine();
+            
+            if (cachedNodes != null && !parseAddresses (cachedNodes).isEmpty() && cachedAt != null)
+            {
+                Long.parseLong (cachedAt.trim());
+                return new String[] { cachedNodes, cachedAt.trim() };
+            }
+        }
+        catch (IOException | NumberFormatException failureReport)
+        {
+            System.out.println ("Ignoring unreadable sync node cache.");
+        }
+        
+        return null;
+    }
+    
+    private static void writeCache (List<String> addresses)
+    {
+        try (BufferedWriter writer = new BufferedWriter (new FileWriter (CACHE_FILE_PATH)))
+        {
+            writer.write (String.join (",", addresses));
+            writer.newLine();
+            writer.write (Long.toString (System.currentTimeMillis()));
+            writer.newLine();
+        }
+        catch (IOException failureReport)
+        {
+            System.out.println ("Failed to cache the sync nodes.");
+        }
+    }
+}
@@ -10,13 +10,14 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.math.BigInteger;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.util.ArrayList;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 
 public class Utils
@@ -24,33 +25,65 @@ public class Utils
     /**
      * Miner configuration file format:
      *  Lines that start with '#' are comments.
-     *  Following this, we're looking for the field: coreLimit=...
+     *  Following this, we're looking for the fields: coreLimit=..., hashEngine=..., batchSize=..., pollInterval=...
+     *  syncNodes=..., balanceCacheTTL=..., metricsPort=... and metricsAddress=...
      * 
-     * The default coreLimit is 1.
+     * The default coreLimit is 1. The default hashEngine is auto. The default batchSize is 4096.
+     * The default pollInterval is 1000. By default syncNodes is empty, and the nodes are looked up.
+     * The default balanceCacheTTL is 30000. By default metricsPort is 0, and no metrics are served.
+     * The default metricsAddress is 127.0.0.1.
      */
-    private static final String CONFIG_FILE_PATH = "config.txt";
+    public static final String CONFIG_FILE_PATH = "config.txt";
     
-    private static final String KRIST_SYNC_LINK = getPage ("https://raw.githubusercontent.com/BTCTaras/kristwallet/master/staticapi/syncNode").get (0) + "?";
-    private static final String LAST_BLOCK_LINK = KRIST_SYNC_LINK + "lastblock";
-    private static final String GET_WORK_LINK = KRIST_SYNC_LINK + "getwork";
-    private static final String BALANCE_LINK_BASE = KRIST_SYNC_LINK + "getbalance=";
-    private static final String TRANSACTION_LINK_BASE = KRIST_SYNC_LINK + "pushtx2&q=%s&pkey=%s&amt=%d";
+    /**
+     * Metrics are only served to this machine unless configured otherwise.
+     */
+    public static final String DEFAULT_METRICS_ADDRESS = "127.0.0.1";
+    
+    /**
+     * Queries for the sync nodes, @see <code>SyncNode</code>. They are only
+     * turned into links when used, so that nothing here waits for the
+     * network until the first request.
+     */
+    private static final String LAST_BLOCK_QUERY = "lastblock";
+    private static final String GET_WORK_QUERY = "getwork";
+    private static final String BALANCE_QUERY_BASE = "getbalance=";
+    private static final String TRANSACTION_QUERY_BASE = "pushtx2&q=%s&pkey=%s&amt=%d";
+    
+    /**
+     * The most nodes a query is sent to before giving up on it: the one
+     * picked, and then the next best if that one fails.
+     */
+    private static final int MAX_NODE_ATTEMPTS = 2;
+    
+    /**
+     * Whether or not the last query to a node was answered.
+     */
+    private static volatile boolean isLastQueryAnswered = true;
+    
+    /**
+     * Balance lookups, shared and kept for a while, @see <code>getBalanceCache</code>.
+     */
+    private static BalanceCache balanceCache;
     
     /**
      * Retrieves the last block mined from the krist server.
      * 
-     * @return Last krist block mined, according to the krist server.
+     * @return Last krist block mined, according to the krist server. Null if the server could not be reached.
      */
     public static String getLastBlock()
     {
-        ArrayList<String> lastBlockPageData = null;
-        
-        while (lastBlockPageData == null)
-        {
-            lastBlockPageData = getPage (LAST_BLOCK_LINK);
-        }
-        
-        return lastBlockPageData.get (0);
+        return HttpTransport.firstLine (askNode (LAST_BLOCK_QUERY, HttpTransport.WORK_TIMEOUT));
+    }
+    
+    /**
+     * Retrieves the last block mined from the krist server without waiting.
+     * 
+     * @return Last krist block mined, to come. Completes exceptionally if the request fails.
+     */
+    public static CompletableFuture<String> getLastBlockAsync()
+    {
+        return askNodeAsync (LAST_BLOCK_QUERY, HttpTransport.WORK_TIMEOUT).thenApply (HttpTransport::firstLine);
     }
     
     /**
@@ -64,33 +97,35 @@ public class Utils
      */
     public static boolean makeTransaction(String password, String recipient, int amount)
     {
-        String transactionLink = String.format(TRANSACTION_LINK_BASE, recipient, Utils.subSHA256("KRISTWALLET" + password, 64) + "-000", amount);
-        ArrayList<String> success = getPage(transactionLink);
+        String transactionQuery = String.format(TRANSACTION_QUERY_BASE, recipient, Utils.subSHA256("KRISTWALLET" + password, 64) + "-000", amount);
+        String success          = HttpTransport.firstLine (askNode (transactionQuery, HttpTransport.TRANSACTION_TIMEOUT));
+        
+        if (!"Success".equals (success))
+        {
+            return false;
+        }
         
-        return success != null && !success.isEmpty() && success.get(0).equals("Success");
+        invalidateBalance (generateAddressV2 (password));
+        invalidateBalance (recipient);
+        
+        return true;
     }
     
     /**
      * Retrieves the current target block.
      * 
-     * @return Current target block from the krist server.
+     * There is no retrying here: callers keep mining the work they have
+     * and try again later, @see <code>BlockWatcher</code>.
+     * 
+     * @return Current target block from the krist server, or -1 if the server could not be reached.
      */
     public static long getWork()
     {
-        ArrayList<String> targetData = null;
-        
-        // Try to get the latest target until we achieve success.
-        // This may cause the program to freeze, but it prevents the miner
-        // from breaking elsewhere.
-        while (targetData == null)
-        {
-            targetData = getPage (GET_WORK_LINK);
-        }
+        String targetData = askNode (GET_WORK_QUERY, HttpTransport.WORK_TIMEOUT);
         
         try
         {
-            long target = Long.parseLong (targetData.get (0));
-            return target;
+            return HttpTransport.parseLong (targetData);
         }
         catch (NumberFormatException failure)
         {
@@ -100,16 +135,77 @@ public class Utils
     }
     
     /**
-     * Retrieves the balance of the given krist address.
+     * Retrieves the current target without waiting.
+     * 
+     * @return Current target from the krist server, to come. Completes
+     *         exceptionally if the request fails or the answer is not a number.
+     */
+    public static CompletableFuture<Long> getWorkAsync()
+    {
+        return askNodeAsync (GET_WORK_QUERY, HttpTransport.WORK_TIMEOUT).thenApply (HttpTransport::parseLong);
+    }
+    
+    /**
+     * Retrieves the balance of the given krist address. Recent answers are
+     * reused, @see <code>getBalanceCache</code>.
      * 
      * @param userAddress Krist address of which the balance will be retrieved
-     * @return User's KST balance as a string
+     * @return User's KST balance as a string, or null if the server could not be reached
      * (avoid the need to do a try-catch for <code>NumberFormatException</code>).
      */
     public static String getBalance (String userAddress)
     {
-        ArrayList<String> balanceData = getPage (BALANCE_LINK_BASE + userAddress);
-        return balanceData == null ? null : balanceData.get (0);
+        try
+        {
+            return getBalanceAsync (userAddress).join();
+        }
+        catch (CompletionException lookupFailure)
+        {
+            return null;
+        }
+    }
+    
+    /**
+     * Retrieves the balance of the given krist address without waiting.
+     * Recent answers are reused, @see <code>getBalanceCache</code>.
+     * 
+     * @param userAddress Krist address of which the balance will be retrieved
+     * @return User's KST balance as a string, to come. Completes exceptionally if the request fails.
+     */
+    public static CompletableFuture<String> getBalanceAsync (String userAddress)
+    {
+        return getBalanceCache().get (userAddress);
+    }
+    
+    /**
+     * Makes the next lookup of the given address's balance, or of its
+     * validity, ask the krist server again. To be called whenever the
+     * balance is known to have changed.
+     * 
+     * @param userAddress Krist address whose balance has changed.
+     */
+    public static void invalidateBalance (String userAddress)
+    {
+        getBalanceCache().invalidate (userAddress);
+    }
+    
+    /**
+     * Every balance lookup, including the ones behind <code>isMinerValid</code>,
+     * goes through this cache. It keeps answers for <code>balanceCacheTTL</code>
+     * milliseconds from the configuration file, and callers asking about the
+     * same address at once share a single request.
+     * 
+     * @return The cache, which is created on first use.
+     */
+    private static synchronized BalanceCache getBalanceCache()
+    {
+        if (balanceCache == null)
+        {
+            balanceCache = new BalanceCache (address -> askNodeAsync (BALANCE_QUERY_BASE + address, HttpTransport.BALANCE_TIMEOUT).thenApply (HttpTransport::firstLine),
+                                             getConfiguredBalanceCacheTTL());
+        }
+        
+        return balanceCache;
     }
     
     /**
@@ -118,10 +214,103 @@ public class Utils
      * 
      * @param minerID Krist address under which the solution will be submitted.
      * @param nonce The nonce at which the miner solved the current target.
+     * @return The server's answer, @see <code>SolutionSubmitter.ACCEPTED_ANSWER</code>. Null if the
+     *         server could not be reached, in which case the solution should be tried again later.
      */
-    public static void submitSolution (String minerID, long nonce)
+    public static String submitSolution (String minerID, long nonce)
     {
-        getPage (KRIST_SYNC_LINK + "submitblock&address=" + minerID + "&nonce=" + nonce);
+        return HttpTransport.firstLine (askNode (getSubmitQuery (minerID, nonce), HttpTransport.SUBMIT_TIMEOUT));
+    }
+    
+    /**
+     * Submits the miner's solution without waiting.
+     * 
+     * @param minerID Krist address under which the solution will be submitted.
+     * @param nonce The nonce at which the miner solved the current target.
+     * @return The node's answer, to come. Completes exceptionally if the request fails.
+     */
+    public static CompletableFuture<String> submitSolutionAsync (String minerID, long nonce)
+    {
+        return askNodeAsync (getSubmitQuery (minerID, nonce), HttpTransport.SUBMIT_TIMEOUT).thenApply (HttpTransport::firstLine);
+    }
+    
+    private static String getSubmitQuery (String minerID, long nonce)
+    {
+        return "submitblock&address=" + minerID + "&nonce=" + nonce;
+    }
+    
+    /**
+     * @return Whether or not the last query to a krist node was answered.
+     */
+    public static boolean isNodeReachable()
+    {
+        return isLastQueryAnswered;
+    }
+    
+    /**
+     * Sends a query to the node picked by <code>SyncNode</code>, failing over
+     * to the next best node if it is not answered. Nodes which are known to
+     * be down are not asked. An error status is an answer, such as krist's
+     * to a balance query for an invalid address, so it neither counts against
+     * the node nor moves the query on to another one.
+     * 
+     * @return The body of the answer, or null if there was none or it had an error status.
+     */
+    private static String askNode (String query, Duration timeout)
+    {
+        KristNode failed = null;
+        
+        for (int attempt = 0; attempt < MAX_NODE_ATTEMPTS; attempt++)
+        {
+            KristNode node = SyncNode.pick (failed);
+            if (node == null)
+            {
+                break;
+            }
+            
+            HttpResponse<String> response = HttpTransport.send (node.getLink() + query, timeout);
+            node.recordOutcome (response != null);
+            
+            if (response != null)
+            {
+                isLastQueryAnswered = true;
+                return HttpTransport.bodyOf (response);
+            }
+            
+            failed = node;
+        }
+        
+        isLastQueryAnswered = false;
+        return null;
+    }
+    
+    /**
+     * Sends a query without waiting, @see <code>askNode</code>.
+     * 
+     * @return The body of the answer, to come. Completes exceptionally if
+     *         there is none or it has an error status.
+     */
+    private static CompletableFuture<String> askNodeAsync (String query, Duration timeout)
+    {
+        return askNodeAsync (query, timeout, null, MAX_NODE_ATTEMPTS).thenApply (HttpTransport::requireBody);
+    }
+    
+    private static CompletableFuture<HttpResponse<String>> askNodeAsync (String query, Duration timeout, KristNode failed, int attemptsLeft)
+    {
+        KristNode node = SyncNode.pick (failed);
+        if (node == null)
+        {
+            isLastQueryAnswered = false;
+            return CompletableFuture.failedFuture (new IllegalStateException ("No krist node is reachable."));
+        }
+        
+        CompletableFuture<HttpResponse<String>> answer = HttpTransport.sendAsync (node.getLink() + query, timeout).whenComplete ((response, failure) ->
+        {
+            node.recordOutcome (failure == null);
+            isLastQueryAnswered = failure == null;
+        });
+        
+        return attemptsLeft <= 1 ? answer : answer.exceptionallyCompose (failure -> askNodeAsync (query, timeout, node, attemptsLeft - 1));
     }
     
     /**
@@ -137,60 +326,57 @@ public class Utils
         return Hashing.sha256().hashString (data, Charsets.UTF_8).toString().substring (0, endIndex);
     }
     
+    /**
+     * Checks the given nonce against the target using the reference Guava
+     * SHA-256, exactly as the miner originally did for every hash. This is
+     * used to cross-check solutions found by <code>NonceHasher</code>
+     * before they are submitted.
+     * 
+     * @param minerID Krist address the nonce was mined for.
+     * @param block The block the nonce was mined against.
+     * @param nonce The nonce to check.
+     * @param target The target the hash must fall below.
+     * @return Whether or not the nonce's hash is below the target.
+     */
+    public static boolean isSolution (String minerID, String block, long nonce, long target)
+    {
+        if (Long.parseLong (subSHA256 (minerID + block + Long.toString (nonce, 36), 12), 16) < target)
+        {
+            return true;
+        }
+        
+        System.out.println ("Hash mismatch with reference SHA-256 for nonce " + nonce + ". Not submitting.");
+        return false;
+    }
+    
     /**
      * Checks whether or not the given krist address is a valid address.
      * 
      * This is achieved by attempting to check the balance of the given
      * address; if it is invalid, then it will have no such page, yielding a
-     * null return value from <code>getPage</code>. However, if it is a valid
-     * address, then the call to <code>getPage</code> will yield a non-null
-     * value.
+     * null return value from <code>getBalance</code>. However, if it is
+     * a valid address, then the call will yield a non-null value. The
+     * balance is kept, so showing it afterwards costs no second request.
      * 
      * @param minerID Address of which to check the validity.
      * @return Validity of <code>minerID</code>
      */
     public static boolean isMinerValid (String minerID)
     {
-        ArrayList<String> minerValidity = getPage (BALANCE_LINK_BASE + minerID);
-        
-        // Error retrieving page data.
-        return minerValidity != null && !minerValidity.isEmpty();
+        return isMinerValidAsync (minerID).join();
     }
     
     /**
-     * Downloads the source of the page at <code>url</code>. Stored line by line.
+     * Checks whether or not the given krist address is a valid address,
+     * without waiting, @see <code>isMinerValid</code>.
      * 
-     * @param url The url whose content will be downloaded.
-     * @return The page's source, line by line. Null if there was an issue downloading.
+     * @param minerID Address of which to check the validity.
+     * @return Validity of <code>minerID</code>, to come. False if the server could not be reached.
      */
-    public static ArrayList<String> getPage (String url)
+    public static CompletableFuture<Boolean> isMinerValidAsync (String minerID)
     {
-        try
-        {
-            URL         lastBlockURL    = new URL (url);
-            InputStream pageInputStream = lastBlockURL.openStream();
-            BufferedReader pageReader   = new BufferedReader (new InputStreamReader (pageInputStream));
-            
-            ArrayList<String> lines = new ArrayList();
-            String line;
-            
-            while ((line = pageReader.readLine()) != null)
-            {
-                lines.add (line);
-            }
-            
-            return lines;
-        }
-        catch (MalformedURLException malformedException)
-        {
-            System.out.println (malformedException.getMessage());
-        }
-        catch (IOException ioException)
-        {
-            System.out.println (ioException.getMessage());
-        }
-        
-        return null;
+        // Error retrieving page data.
+        return getBalanceAsync (minerID).handle ((minerValidity, failure) -> failure == null && minerValidity != null && !minerValidity.isEmpty());
     }
     
     /**
@@ -201,6 +387,13 @@ public class Utils
      * 
      * The configuration file currently contains the following fields:
      *  - coreLimit: The configured core limit for the miner.
+     *  - hashEngine: The hash engine to use, @see <code>HashEngines</code>.
+     *  - batchSize: The number of nonces hashed between checks for a stop or a new block.
+     *  - pollInterval: The milliseconds between checks of the krist server for a new block.
+     *  - syncNodes: The krist nodes to choose between, @see <code>SyncNode</code>.
+     *  - balanceCacheTTL: The milliseconds for which a balance lookup is reused, @see <code>BalanceCache</code>.
+     *  - metricsPort: The port to serve metrics on, or 0 for none, @see <code>MetricsServer</code>.
+     *  - metricsAddress: The address to serve metrics on.
      * 
      * @return Creation success or failure.
      */
@@ -231,6 +424,52 @@ public class Utils
                 writer.newLine();
                 
                 writer.write ("coreLimit=" + ManagerGUI.DEFAULT_MAX_CORE_LIMIT);
+                writer.newLine();
+                writer.newLine();
+                writer.write ("# The hash engine to mine with: java, vector or native. The default, auto,");
+                writer.newLine();
+                writer.write ("# measures every engine supported on this machine and picks the fastest.");
+                writer.newLine();
+                writer.write ("hashEngine=" + HashEngines.AUTOMATIC);
+                writer.newLine();
+                writer.newLine();
+                writer.write ("# The number of nonces each core hashes between checks for a stop or a new");
+                writer.newLine();
+                writer.write ("# block. Smaller batches stop sooner, larger ones waste less time checking.");
+                writer.newLine();
+                writer.write ("batchSize=" + ClusterMiner.BATCH_SIZE);
+                writer.newLine();
+                writer.newLine();
+                writer.write ("# How often, in milliseconds, to ask the krist server whether the block has");
+                writer.newLine();
+                writer.write ("# changed. The minimum is 100.");
+                writer.newLine();
+                writer.write ("pollInterval=" + PoolMiningEngine.DEFAULT_POLL_INTERVAL);
+                writer.newLine();
+                writer.newLine();
+                writer.write ("# The krist nodes to mine through, separated by commas. Each is probed every");
+                writer.newLine();
+                writer.write ("# few seconds, and the fastest one which answers is used. Leave this empty to");
+                writer.newLine();
+                writer.write ("# use the nodes listed by kristwallet.");
+                writer.newLine();
+                writer.write ("syncNodes=");
+                writer.newLine();
+                writer.newLine();
+                writer.write ("# How long, in milliseconds, to reuse a balance from the krist server before");
+                writer.newLine();
+                writer.write ("# asking again. Balances are always asked again after a block or a transaction.");
+                writer.newLine();
+                writer.write ("balanceCacheTTL=" + BalanceCache.DEFAULT_TIME_TO_LIVE);
+                writer.newLine();
+                writer.newLine();
+                writer.write ("# The port to serve hash rates and counters on, at /metrics, for Prometheus.");
+                writer.newLine();
+                writer.write ("# 0 turns it off. Set the address to 0.0.0.0 to let other machines scrape it.");
+                writer.newLine();
+                writer.write ("metricsPort=0");
+                writer.newLine();
+                writer.write ("metricsAddress=" + DEFAULT_METRICS_ADDRESS);
                 writer.close();
                 
                 return true;
@@ -252,42 +491,198 @@ public class Utils
      * @return The core limit configured by the user.
      */
     public static int getConfiguredCoreLimit()
+    {
+        String coreLimit = getConfigurationValue ("coreLimit");
+        
+        // Convert the limit to a valid integer.
+        if (coreLimit != null)
+        {
+            try
+            {
+                int configuredCoreLimit = Integer.parseInt (coreLimit);
+
+                // Make sure the core limit is within the max and min values.
+                if (configuredCoreLimit >= ManagerGUI.DEFAULT_MAX_CORE_LIMIT && configuredCoreLimit <= ManagerGUI.MAX_CORE_LIMIT)
+                {
+                    return configuredCoreLimit;
+                }
+            }
+            catch (NumberFormatException conversionFailureReport)
+            {
+                System.out.println ("Failed to convert configured core limit to integer.");
+            }
+        }
+        
+        return ManagerGUI.DEFAULT_MAX_CORE_LIMIT;
+    }
+    
+    /**
+     * Reads the configuration file for the name of the hash engine to mine
+     * with. @see <code>krist.miner.HashEngines</code>.
+     * 
+     * @return The configured engine name, or <code>HashEngines.AUTOMATIC</code> if none is set.
+     */
+    public static String getConfiguredHashEngine()
+    {
+        String hashEngine = getConfigurationValue ("hashEngine");
+        return hashEngine == null || hashEngine.isEmpty() ? HashEngines.AUTOMATIC : hashEngine;
+    }
+    
+    /**
+     * Reads the configuration file for the number of nonces each miner hashes
+     * between checks for cancelled work. @see <code>MinerPool.setBatchSize</code>.
+     * 
+     * @return The configured batch size, or <code>ClusterMiner.BATCH_SIZE</code> if none is set.
+     */
+    public static int getConfiguredBatchSize()
+    {
+        String batchSize = getConfigurationValue ("batchSize");
+        
+        if (batchSize != null)
+        {
+            try
+            {
+                return Integer.parseInt (batchSize);
+            }
+            catch (NumberFormatException conversionFailureReport)
+            {
+                System.out.println ("Failed to convert configured batch size to integer.");
+            }
+        }
+        
+        return ClusterMiner.BATCH_SIZE;
+    }
+    
+    /**
+     * Reads the configuration file for the time between polls for a new
+     * block. @see <code>PoolMiningEngine.setPollInterval</code>.
+     * 
+     * @return The configured poll interval in milliseconds, or <code>PoolMiningEngine.DEFAULT_POLL_INTERVAL</code> if none is set.
+     */
+    public static long getConfiguredPollInterval()
+    {
+        String pollInterval = getConfigurationValue ("pollInterval");
+        
+        if (pollInterval != null)
+        {
+            try
+            {
+                return Long.parseLong (pollInterval);
+            }
+            catch (NumberFormatException conversionFailureReport)
+            {
+                System.out.println ("Failed to convert configured poll interval to integer.");
+            }
+        }
+        
+        return PoolMiningEngine.DEFAULT_POLL_INTERVAL;
+    }
+    
+    /**
+     * Reads the configuration file for how long balance lookups are reused.
+     * @see <code>BalanceCache</code>.
+     * 
+     * @return The configured time to live in milliseconds, or <code>BalanceCache.DEFAULT_TIME_TO_LIVE</code> if none is set.
+     */
+    public static long getConfiguredBalanceCacheTTL()
+    {
+        String timeToLive = getConfigurationValue ("balanceCacheTTL");
+        
+        if (timeToLive != null)
+        {
+            try
+            {
+                return Math.max (0, Long.parseLong (timeToLive));
+            }
+            catch (NumberFormatException conversionFailureReport)
+            {
+                System.out.println ("Failed to convert configured balance cache TTL to integer.");
+            }
+        }
+        
+        return BalanceCache.DEFAULT_TIME_TO_LIVE;
+    }
+    
+    /**
+     * Reads the configuration file for the port to serve metrics on.
+     * @see <code>MetricsServer</code>.
+     * 
+     * @return The configured port, or 0, meaning no metrics, if none is set.
+     */
+    public static int getConfiguredMetricsPort()
+    {
+        String metricsPort = getConfigurationValue ("metricsPort");
+        
+        if (metricsPort != null && !metricsPort.isEmpty())
+        {
+            try
+            {
+                return Integer.parseInt (metricsPort);
+            }
+            catch (NumberFormatException conversionFailureReport)
+            {
+                System.out.println ("Failed to convert configured metrics port to integer.");
+            }
+        }
+        
+        return 0;
+    }
+    
+    /**
+     * Reads the configuration file for the address to serve metrics on.
+     * 
+     * @return The configured address, or <code>DEFAULT_METRICS_ADDRESS</code> if none is set.
+     */
+    public static String getConfiguredMetricsAddress()
+    {
+        String metricsAddress = getConfigurationValue ("metricsAddress");
+        return metricsAddress == null || metricsAddress.isEmpty() ? DEFAULT_METRICS_ADDRESS : metricsAddress;
+    }
+    
+    /**
+     * Reads the configuration file for the krist nodes to choose between.
+     * @see <code>SyncNode</code>.
+     * 
+     * @return The configured node addresses, or an empty list if none are set.
+     */
+    public static List<String> getConfiguredSyncNodes()
+    {
+        String syncNodes = getConfigurationValue ("syncNodes");
+        return syncNodes == null ? Collections.<String>emptyList() : SyncNode.parseAddresses (syncNodes);
+    }
+    
+    /**
+     * Reads the value of the given field from the configuration file stored
+     * at <code>Utils.CONFIG_FILE_PATH</code>. Fields are written as
+     * <code>field=value</code>, one per line.
+     * 
+     * If the file does not exist yet, it is created with its defaults.
+     * 
+     * @param field Name of the field to read.
+     * @return The field's value, trimmed, or null if it is not in the file.
+     */
+    public static String getConfigurationValue (String field)
     {
         File configurationFile = new File (CONFIG_FILE_PATH);
         
         // Make sure that our file exists. If not, then we'll create it.
         if (configurationFile.exists() && !configurationFile.isDirectory())
         {
-            try
+            try (BufferedReader reader = new BufferedReader (new FileReader (configurationFile.getAbsolutePath())))
             {
-                FileReader     readerHandle = new FileReader (configurationFile.getAbsolutePath());
-                BufferedReader reader       = new BufferedReader (readerHandle);
-                
-                // Read lines from the file until we hit the core limit.
+                // Read lines from the file until we hit the field.
                 String line;
-                while ((line = reader.readLine()) != null && !line.startsWith ("coreLimit="))
-                {
-                }
-                
-                // Convert the limit to a valid integer.
-                try
+                while ((line = reader.readLine()) != null)
                 {
-                    int configuredCoreLimit = Integer.parseInt (line.substring (("coreLimit=").length()));
-                    
-                    // Make sure the core limit is within the max and min values.
-                    if (configuredCoreLimit >= ManagerGUI.DEFAULT_MAX_CORE_LIMIT && configuredCoreLimit <= ManagerGUI.MAX_CORE_LIMIT)
+                    if (line.startsWith (field + "="))
                     {
-                        return configuredCoreLimit;
+                        return line.substring ((field + "=").length()).trim();
                     }
                 }
-                catch (Exception conversionFailureReport)
-                {
-                    System.out.println ("Failed to convert configured core limit to integer.");
-                }
             }
             catch (IOException failureReport)
             {
-                System.out.println ("Failed to read configuration core limit from existing file.");
+                System.out.println ("Failed to read configuration field '" + field + "' from existing file.");
             }
         }
         else
@@ -295,7 +690,7 @@ public class Utils
             createConfigurationFile();
         }
         
-        return ManagerGUI.DEFAULT_MAX_CORE_LIMIT;
+        return null;
     }
     
     /**
@@ -0,0 +1,58 @@
+package krist.miner;
+
+/**
+ * The SIMD engine, backed by <code>VectorNonceHasher</code>. It is only
+ * supported when the JVM was started with
+ * <code>--add-modules jdk.incubator.vector</code>.
+ */
+public final class VectorHashEngine implements HashEngine
+{
+    @Override
+    public String getName()
+    {
+        return "vector";
+    }
+    
+    @Override
+    public boolean isSupported()
+    {
+        // Nothing from the incubator module may be touched before this check,
+        // or the class would fail to link.
+        return ModuleLayer.boot().findModule ("jdk.incubator.vector").isPresent();
+    }
+    
+    @Override
+    public BatchHasher newBatchHasher (Midstate midstate, int batchSize)
+    {
+        final VectorNonceHasher hasher = new VectorNonceHasher (midstate);
+        
+        return new BatchHasher()
+        {
+            @Override
+            public long findBelow (long firstNonce, int count, long target)
+            {
+                int lanes = hasher.lanes();
+                hasher.seek (firstNonce);
+                
+                // The last group may run past 'count'; hits there are ignored
+                // as they belong to the next batch.
+                for (int index = 0; index < count; index += lanes, hasher.advance())
+                {
+                    int lane = hasher.findBelow (target);
+                    
+                    if (lane >= 0 && index + lane < count)
+                    {
+                        return firstNonce + index + lane;
+                    }
+                }
+                
+                return -1;
+            }
+            
+            @Override
+            public void close()
+            {
+            }
+        };
+    }
+}
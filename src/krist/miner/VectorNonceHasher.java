@@ -0,0 +1,228 @@
+package krist.miner;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Checks several consecutive nonces at once, one per SIMD lane, using the
+ * incubating Java Vector API. On AVX2 hardware the preferred species holds 8
+ * ints and on AVX-512 it holds 16, so that many hashes share every vector
+ * instruction of the final compression.
+ *
+ * Each lane keeps its own <code>NonceHasher</code> for the message bytes, the
+ * base 36 digits and any cached tail blocks; this class only does the final
+ * block's 64 rounds across lanes, with the same truncated finish and target
+ * comparison as <code>Sha256.finishBelow</code>.
+ *
+ * The JVM has to be started with <code>--add-modules jdk.incubator.vector</code>
+ * for this class to load.
+ */
+public final class VectorNonceHasher
+{
+    static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    
+    private final int           lanes;
+    private final NonceHasher[] laneHashers;
+    
+    /**
+     * Lane-major scratch space: word <code>i</code> of lane <code>j</code>
+     * lives at <code>i * lanes + j</code>.
+     */
+    private final int[] states;
+    private final int[] schedule;
+    
+    public VectorNonceHasher (Midstate midstate)
+    {
+        this.lanes       = SPECIES.length();
+        this.laneHashers = new NonceHasher[lanes];
+        this.states      = new int[8 * lanes];
+        this.schedule    = new int[64 * lanes];
+        
+        for (int lane = 0; lane < lanes; lane++)
+        {
+            laneHashers[lane] = new NonceHasher (midstate);
+        }
+    }
+    
+    /**
+     * @return The number of nonces checked by each call to <code>findBelow</code>.
+     */
+    public int lanes()
+    {
+        return lanes;
+    }
+    
+    /**
+     * Points lane <code>i</code> at nonce <code>nonce + i</code>.
+     *
+     * @param nonce The non-negative nonce for the first lane.
+     */
+    public void seek (long nonce)
+    {
+        for (int lane = 0; lane < lanes; lane++)
+        {
+            laneHashers[lane].seek (nonce + lane);
+        }
+    }
+    
+    /**
+     * Moves every lane on by <code>lanes()</code> nonces, to the next group.
+     */
+    public void advance()
+    {
+        for (NonceHasher laneHasher : laneHashers)
+        {
+            laneHasher.advance (lanes);
+        }
+    }
+    
+    /**
+     * @param lane Index of the lane.
+     * @return The nonce which the given lane is currently on.
+     */
+    public long getNonce (int lane)
+    {
+        return laneHashers[lane].getNonce();
+    }
+    
+    /**
+     * Hashes the current nonce of every lane and compares the top 48 bits of
+     * each digest against the target.
+     *
+     * @param target The target which the top 48 bits must fall below.
+     * @return Index of the first lane whose hash is below the target, or -1 if there is none.
+     */
+    public int findBelow (long target)
+    {
+        if (target <= 0)
+        {
+            return -1;
+        }
+        else if (target > Sha256.MAX_TOP48)
+        {
+            return 0;
+        }
+        
+        loadLanes();
+        expandSchedule();
+        
+        IntVector a = IntVector.fromArray (SPECIES, states, 0);
+        IntVector b = IntVector.fromArray (SPECIES, states, lanes);
+        IntVector c = IntVector.fromArray (SPECIES, states, 2 * lanes);
+        IntVector d = IntVector.fromArray (SPECIES, states, 3 * lanes);
+        IntVector e = IntVector.fromArray (SPECIES, states, 4 * lanes);
+        IntVector f = IntVector.fromArray (SPECIES, states, 5 * lanes);
+        IntVector g = IntVector.fromArray (SPECIES, states, 6 * lanes);
+        IntVector h = IntVector.fromArray (SPECIES, states, 7 * lanes);
+        
+        for (int round = 0; round < 63; round++)
+        {
+            IntVector t1 = t1 (e, f, g, h, round);
+            IntVector t2 = t2 (a, b, c);
+            
+            h = g;
+            g = f;
+            f = e;
+            e = d.add (t1);
+            d = c;
+            c = b;
+            b = a;
+            a = t1.add (t2);
+        }
+        
+        // As in Sha256.finishBelow: round 63 only produces H0, and H1 comes
+        // from the 'a' of round 62.
+        IntVector h0 = t1 (e, f, g, h, 63).add (t2 (a, b, c)).add (IntVector.fromArray (SPECIES, states, 0));
+        IntVector h1 = a.add (IntVector.fromArray (SPECIES, states, lanes)).lanewise (VectorOperators.LSHR, 16);
+        
+        int targetHigh = (int) (target >>> 16);
+        int targetLow  = (int) (target & 0xffff);
+        
+        VectorMask<Integer> below = h0.compare (VectorOperators.UNSIGNED_LT, targetHigh)
+                                      .or (h0.compare (VectorOperators.EQ, targetHigh)
+                                             .and (h1.compare (VectorOperators.LT, targetLow)));
+        
+        int lane = below.firstTrue();
+        return lane < lanes ? lane : -1;
+    }
+    
+    /**
+     * Copies each lane's state before the final block and the final block's
+     * 16 message words into the lane-major scratch arrays.
+     */
+    private void loadLanes()
+    {
+        for (int lane = 0; lane < lanes; lane++)
+        {
+            NonceHasher laneHasher = laneHashers[lane];
+            int         finalBlock = laneHasher.prepareFinalBlock();
+            int[]       state      = laneHasher.getFinalBlockState();
+            byte[]      message    = laneHasher.getMessage();
+            
+            for (int word = 0; word < 8; word++)
+            {
+                states[word * lanes + lane] = state[word];
+            }
+            
+            for (int word = 0, offset = finalBlock; word < 16; word++, offset += 4)
+            {
+                schedule[word * lanes + lane] = (message[offset] << 24) | ((message[offset + 1] & 0xff) << 16)
+                                              | ((message[offset + 2] & 0xff) << 8) | (message[offset + 3] & 0xff);
+            }
+        }
+    }
+    
+    /**
+     * Expands the first 16 words of every lane's schedule to all 64.
+     */
+    private void expandSchedule()
+    {
+        for (int word = 16; word < 64; word++)
+        {
+            IntVector w16 = IntVector.fromArray (SPECIES, schedule, (word - 16) * lanes);
+            IntVector w15 = IntVector.fromArray (SPECIES, schedule, (word - 15) * lanes);
+            IntVector w7  = IntVector.fromArray (SPECIES, schedule, (word - 7) * lanes);
+            IntVector w2  = IntVector.fromArray (SPECIES, schedule, (word - 2) * lanes);
+            
+            IntVector s0 = w15.lanewise (VectorOperators.ROR, 7)
+                              .lanewise (VectorOperators.XOR, w15.lanewise (VectorOperators.ROR, 18))
+                              .lanewise (VectorOperators.XOR, w15.lanewise (VectorOperators.LSHR, 3));
+            IntVector s1 = w2.lanewise (VectorOperators.ROR, 17)
+                             .lanewise (VectorOperators.XOR, w2.lanewise (VectorOperators.ROR, 19))
+                             .lanewise (VectorOperators.XOR, w2.lanewise (VectorOperators.LSHR, 10));
+            
+            w16.add (s0).add (w7).add (s1).intoArray (schedule, word * lanes);
+        }
+    }
+    
+    /**
+     * T1 = h + Sigma1(e) + Ch(e, f, g) + K[round] + W[round], across all lanes.
+     */
+    private IntVector t1 (IntVector e, IntVector f, IntVector g, IntVector h, int round)
+    {
+        IntVector sigma1 = e.lanewise (VectorOperators.ROR, 6)
+                            .lanewise (VectorOperators.XOR, e.lanewise (VectorOperators.ROR, 11))
+                            .lanewise (VectorOperators.XOR, e.lanewise (VectorOperators.ROR, 25));
+        
+        // Ch(e, f, g) takes the bits of f where e is set and of g elsewhere.
+        IntVector choose = g.bitwiseBlend (f, e);
+        
+        return h.add (sigma1).add (choose).add (Sha256.K[round])
+                .add (IntVector.fromArray (SPECIES, schedule, round * lanes));
+    }
+    
+    /**
+     * T2 = Sigma0(a) + Maj(a, b, c), across all lanes.
+     */
+    private static IntVector t2 (IntVector a, IntVector b, IntVector c)
+    {
+        IntVector sigma0 = a.lanewise (VectorOperators.ROR, 2)
+                            .lanewise (VectorOperators.XOR, a.lanewise (VectorOperators.ROR, 13))
+                            .lanewise (VectorOperators.XOR, a.lanewise (VectorOperators.ROR, 22));
+        IntVector majority = a.and (b).or (c.and (a.or (b)));
+        
+        return sigma0.add (majority);
+    }
+}
@@ -0,0 +1,44 @@
+package krist.miner;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A new block seen by a poll, from the moment it was noticed until new work
+ * for it was handed to the miners, @see <code>PoolMiningEngine.onBlockPolled</code>.
+ * Its duration is mostly the getwork request.
+ */
+@Name ("krist.miner.WorkSwap")
+@Label ("Work Swap")
+@Category ({ "Krist Miner", "Mining" })
+@Description ("A block change detected, and the miners moved on to work for the new block.")
+@StackTrace (false)
+final class WorkSwapEvent extends Event
+{
+    @Label ("Previous Block")
+    String previousBlock;
+    
+    @Label ("Block")
+    String block;
+    
+    @Label ("Target")
+    long target;
+    
+    @Label ("First Nonce")
+    @Description ("Where the new work starts, after any checkpoint.")
+    long firstNonce;
+    
+    @Label ("Stale Work")
+    @Description ("How long the miners may have spent on the old block.")
+    @Timespan (Timespan.NANOSECONDS)
+    long staleWork;
+    
+    @Label ("Swapped")
+    @Description ("False if no target could be fetched, and the miners kept the old work.")
+    boolean isSwapped;
+}
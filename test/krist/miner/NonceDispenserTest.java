@@ -0,0 +1,193 @@
+package krist.miner;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Test;
+
+/**
+ * Checks that the dispenser shares out the nonce space with no gaps and no
+ * overlaps however many miners claim from it at once, and that the
+ * checkpoint nonce only counts chunks which are finished, in any order.
+ */
+public class NonceDispenserTest
+{
+    private static final int  THREADS     = 8;
+    private static final long FIRST_NONCE = 1000;
+    
+    /**
+     * A whole number of chunks and a short one, so that the last chunk is cut at the end.
+     */
+    private static final long END_NONCE = FIRST_NONCE + 500L * NonceDispenser.CHUNK_SIZE + 123;
+    
+    @Test (timeout = 10000)
+    public void claimsCoverTheRangeExactlyOnce() throws InterruptedException
+    {
+        NonceDispenser dispenser = new NonceDispenser (FIRST_NONCE, END_NONCE);
+        List<long[]>   ranges    = claimUntilExhausted (dispenser);
+        
+        Collections.sort (ranges, (first, second) -> Long.compare (first[0], second[0]));
+        
+        long expectedStart = FIRST_NONCE;
+        for (long[] range : ranges)
+        {
+            assertEquals ("Gap or overlap before chunk " + range[0], expectedStart, range[0]);
+            expectedStart = range[1];
+        }
+        
+        assertEquals ("The chunks end somewhere other than the end nonce.", END_NONCE, expectedStart);
+        assertEquals (END_NONCE, dispenser.getCursor());
+        assertEquals (-1, dispenser.claim());
+    }
+    
+    @Test (timeout = 10000)
+    public void completionsInAnyOrderReachTheEnd() throws InterruptedException
+    {
+        NonceDispenser dispenser = new NonceDispenser (FIRST_NONCE, END_NONCE);
+        List<long[]>   ranges    = claimUntilExhausted (dispenser);
+        
+        Collections.shuffle (ranges, new Random (42));
+        
+        // Each thread finishes every THREADS-th chunk of the shuffled list.
+        List<Runnable> miners = new ArrayList<>();
+        for (int index = 0; index < THREADS; index++)
+        {
+            int first = index;
+            miners.add (() ->
+            {
+                for (int range = first; range < ranges.size(); range += THREADS)
+                {
+                    dispenser.complete (ranges.get (range)[0]);
+                }
+            });
+        }
+        
+        runTogether (miners);
+        
+        assertEquals (END_NONCE, dispenser.complete (FIRST_NONCE));
+    }
+    
+    @Test
+    public void slowChunkHoldsBackTheCheckpointUntilItIsDone()
+    {
+        NonceDispenser dispenser = new NonceDispenser (FIRST_NONCE, END_NONCE);
+        for (int chunk = 0; chunk < 200; chunk++)
+        {
+            dispenser.claim();
+        }
+        
+        // Far more chunks finish past the slow first one than there are miners.
+        for (int chunk = 1; chunk < 150; chunk++)
+        {
+            assertEquals (FIRST_NONCE, dispenser.complete (chunkStart (chunk)));
+        }
+        
+        assertEquals (chunkStart (150), dispenser.complete (chunkStart (0)));
+        
+        for (int chunk = 150; chunk < 200; chunk++)
+        {
+            assertEquals (chunkStart (chunk + 1), dispenser.complete (chunkStart (chunk)));
+        }
+    }
+    
+    @Test
+    public void repeatedCompletionChangesNothing()
+    {
+        NonceDispenser dispenser = new NonceDispenser (FIRST_NONCE, END_NONCE);
+        dispenser.claim();
+        dispenser.claim();
+        
+        assertEquals (chunkStart (1), dispenser.complete (chunkStart (0)));
+        assertEquals (chunkStart (1), dispenser.complete (chunkStart (0)));
+        assertEquals (chunkStart (2), dispenser.complete (chunkStart (1)));
+    }
+    
+    @Test
+    public void cursorDoesNotWrapPastTheEnd()
+    {
+        long           end       = Long.MAX_VALUE;
+        NonceDispenser dispenser = new NonceDispenser (end - 2L * NonceDispenser.CHUNK_SIZE, end);
+        
+        assertEquals (end - 2L * NonceDispenser.CHUNK_SIZE, dispenser.claim());
+        assertEquals (end - NonceDispenser.CHUNK_SIZE, dispenser.claim());
+        
+        // Enough claims for the shared cursor to overflow.
+        for (int claim = 0; claim < 10; claim++)
+        {
+            assertEquals (-1, dispenser.claim());
+        }
+        
+        assertEquals (end, dispenser.getCursor());
+    }
+    
+    private static long chunkStart (int chunk)
+    {
+        return FIRST_NONCE + (long) chunk * NonceDispenser.CHUNK_SIZE;
+    }
+    
+    /**
+     * Has <code>THREADS</code> threads claim chunks until there are none left.
+     *
+     * @return Every claimed range, as its first nonce and the nonce it ends before.
+     */
+    private static List<long[]> claimUntilExhausted (NonceDispenser dispenser) throws InterruptedException
+    {
+        List<long[]>   ranges = Collections.synchronizedList (new ArrayList<>());
+        List<Runnable> miners = new ArrayList<>();
+        
+        for (int index = 0; index < THREADS; index++)
+        {
+            miners.add (() ->
+            {
+                long start;
+                while ((start = dispenser.claim()) >= 0)
+                {
+                    ranges.add (new long[] { start, start + dispenser.getChunkLength (start) });
+                }
+            });
+        }
+        
+        runTogether (miners);
+        return ranges;
+    }
+    
+    /**
+     * Runs each task on its own thread, all starting at once, and waits for them.
+     */
+    private static void runTogether (List<Runnable> tasks) throws InterruptedException
+    {
+        CountDownLatch start   = new CountDownLatch (1);
+        List<Thread>   threads = new ArrayList<>();
+        
+        for (Runnable task : tasks)
+        {
+            Thread thread = new Thread (() ->
+            {
+                try
+                {
+                    start.await();
+                }
+                catch (InterruptedException interruption)
+                {
+                    return;
+                }
+                
+                task.run();
+            });
+            
+            thread.start();
+            threads.add (thread);
+        }
+        
+        start.countDown();
+        
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+    }
+}
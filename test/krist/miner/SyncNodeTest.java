@@ -0,0 +1,214 @@
+package krist.miner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Runs two stand-in krist nodes on the loopback interface, each answering
+ * after its own delay, and checks that queries go to the faster one, stay
+ * put when the other is only a little faster, and fail over when a node
+ * stops answering, but not when it answers with an error status.
+ */
+public class SyncNodeTest
+{
+    private static final String BLOCK = "000000abcdef";
+    
+    /**
+     * Enough probes to replace every latency the median is taken over.
+     */
+    private static final int PROBE_ROUNDS = 6;
+    
+    private StandIn first;
+    private StandIn second;
+    
+    @Before
+    public void startNodes() throws IOException
+    {
+        first  = new StandIn (5);
+        second = new StandIn (5);
+        
+        // Warm up the connections and the code behind them, then start
+        // afresh, so that the first probes are not slow for their own sake.
+        SyncNode.reset (Arrays.asList (first.address, second.address));
+        probe();
+        SyncNode.reset (Arrays.asList (first.address, second.address));
+    }
+    
+    @After
+    public void stopNodes()
+    {
+        SyncNode.reset (null);
+        
+        first.stop();
+        second.stop();
+    }
+    
+    @Test (timeout = 30000)
+    public void queriesGoToTheFastestNode()
+    {
+        // Listed first, but slower.
+        first.delayMillis = 100;
+        
+        probe();
+        
+        assertEquals (second.address, SyncNode.pick (null).getAddress());
+        assertEquals (BLOCK, Utils.getLastBlock());
+        assertSame (SyncNode.pick (null), SyncNode.getCurrentNode());
+    }
+    
+    @Test (timeout = 30000)
+    public void slightlyFasterNodeDoesNotTakeOver()
+    {
+        first.delayMillis  = 10;
+        second.delayMillis = 150;
+        
+        probe();
+        assertEquals (first.address, SyncNode.pick (null).getAddress());
+        
+        // 135 against 150 ms is faster, but not by SWITCH_RATIO.
+        first.delayMillis  = 150;
+        second.delayMillis = 135;
+        
+        probe();
+        assertEquals (first.address, SyncNode.getCurrentNode().getAddress());
+        
+        // 10 against 150 ms is.
+        second.delayMillis = 10;
+        
+        probe();
+        assertEquals (second.address, SyncNode.getCurrentNode().getAddress());
+    }
+    
+    @Test (timeout = 30000)
+    public void queriesFailOverWhenTheNodeStops()
+    {
+        second.delayMillis = 100;
+        
+        probe();
+        assertEquals (first.address, SyncNode.pick (null).getAddress());
+        
+        first.stop();
+        
+        // The failing node is left within the same query, and for good from the next.
+        assertEquals (BLOCK, Utils.getLastBlock());
+        assertFalse (SyncNode.getNodes().get (0).isHealthy());
+        
+        assertEquals (BLOCK, Utils.getLastBlock());
+        assertEquals (second.address, SyncNode.getCurrentNode().getAddress());
+        
+        // Probing confirms it, and does not move back.
+        probe();
+        assertEquals (second.address, SyncNode.getCurrentNode().getAddress());
+    }
+    
+    @Test (timeout = 30000)
+    public void errorStatusDoesNotCountAgainstTheNode()
+    {
+        second.delayMillis   = 100;
+        first.balanceStatus  = 400;
+        
+        probe();
+        assertEquals (first.address, SyncNode.pick (null).getAddress());
+        
+        // Far more invalid addresses than it takes to open a breaker.
+        for (int check = 0; check < 10; check++)
+        {
+            Utils.invalidateBalance ("kinvalid00");
+            assertFalse (Utils.isMinerValid ("kinvalid00"));
+            assertTrue (Utils.isNodeReachable());
+        }
+        
+        assertTrue (SyncNode.getNodes().get (0).isHealthy());
+        assertEquals (0, second.balanceQueries.get());
+        
+        assertEquals (BLOCK, Utils.getLastBlock());
+        assertEquals (first.address, SyncNode.getCurrentNode().getAddress());
+    }
+    
+    private static void probe()
+    {
+        for (int round = 0; round < PROBE_ROUNDS; round++)
+        {
+            SyncNode.probeNow();
+        }
+    }
+    
+    /**
+     * A krist node which answers every query with <code>BLOCK</code>, after a delay which can be changed at any time.
+     * Balance queries are answered with <code>balanceStatus</code> instead, if it is an error status.
+     */
+    private static final class StandIn
+    {
+        private final HttpServer      server;
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+        private final String          address;
+        
+        private final AtomicInteger   balanceQueries = new AtomicInteger();
+        
+        private volatile long delayMillis;
+        private volatile int  balanceStatus = 200;
+        
+        StandIn (long delayMillis) throws IOException
+        {
+            this.delayMillis = delayMillis;
+            this.server      = HttpServer.create (new InetSocketAddress ("127.0.0.1", 0), 0);
+            this.address     = "http://127.0.0.1:" + server.getAddress().getPort() + "/index.php";
+            
+            server.createContext ("/", exchange ->
+            {
+                try
+                {
+                    Thread.sleep (this.delayMillis);
+                }
+                catch (InterruptedException interruption)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                
+                if (exchange.getRequestURI().getQuery().startsWith ("getbalance="))
+                {
+                    balanceQueries.incrementAndGet();
+                    
+                    if (balanceStatus >= 400)
+                    {
+                        exchange.sendResponseHeaders (balanceStatus, -1);
+                        exchange.close();
+                        return;
+                    }
+                }
+                
+                byte[] body = BLOCK.getBytes (StandardCharsets.US_ASCII);
+                exchange.sendResponseHeaders (200, body.length);
+                
+                try (OutputStream out = exchange.getResponseBody())
+                {
+                    out.write (body);
+                }
+            });
+            
+            server.setExecutor (executor);
+            server.start();
+        }
+        
+        void stop()
+        {
+            server.stop (0);
+            executor.shutdownNow();
+        }
+    }
+}